@@ -1,9 +1,12 @@
 package nl.twente.bms;
 
 import nl.twente.bms.model.MatchingModel;
+import nl.twente.bms.model.RestartEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Random;
+
 /**
  * Test application
  */
@@ -75,6 +78,12 @@ public class RandomApp {
         System.out.println("driverIndicesStr: " + driverIndicesStr);
         System.out.println("parcelIndicesStr: " + parcelIndicesStr);
 
+        // the restarts are reproducible with the same seed, whatever the number of threads
+        long seed = Long.getLong("seed", System.currentTimeMillis());
+        int numThreads = Integer.getInteger("threads", Runtime.getRuntime().availableProcessors());
+        System.out.println("seed: " + seed);
+        System.out.println("threads: " + numThreads);
+
         ClassLoader.getSystemClassLoader().setDefaultAssertionStatus(true);
 
 
@@ -104,8 +113,10 @@ public class RandomApp {
 
 
         System.out.println("########## Constrained Random: ");
+        // each restart keeps the departure times of the drivers assigned by the previous one
+        Random rand = new Random(seed);
         while(++i <= numIter){
-            model.shuffle(false);
+            model.shuffle(false, rand);
             model.solve();
             double cost = model.computeCost();
             if(cost < bestCost){
@@ -135,10 +146,9 @@ public class RandomApp {
         bestCost = initCost;
         bestIter = i;
 
+        RestartEngine.Result result = new RestartEngine(model, seed, numThreads).run(2, numIter * 4);
         while(++i <= numIter * 4){
-            model.shuffle(true);
-            model.solve();
-            double cost = model.computeCost();
+            double cost = result.getCost(i);
             if(cost < bestCost){
                 System.out.println(i + "\t" + cost);
                 bestCost = cost;
@@ -0,0 +1,85 @@
+package nl.twente.bms.algo;
+
+import nl.twente.bms.algo.struct.CompactStationGraph;
+import nl.twente.bms.algo.struct.IntDistanceMatrix;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the shortest distances between all pairs of vertices in parallel,
+ * running one Dijkstra search per source vertex as a fork-join task.
+ *
+ * @author Feng Zhao (feng.zhao@feedzai.com)
+ * @since 1.0
+ */
+public class AllPairsShortestDistances {
+    private final CompactStationGraph compactGraph;
+    private final ForkJoinPool pool;
+
+    public AllPairsShortestDistances(CompactStationGraph compactGraph) {
+        this(compactGraph, ForkJoinPool.commonPool());
+    }
+
+    public AllPairsShortestDistances(CompactStationGraph compactGraph, ForkJoinPool pool) {
+        this.compactGraph = compactGraph;
+        this.pool = pool;
+    }
+
+    public IntDistanceMatrix compute(int[] sources, boolean symmetric) {
+        return compute(sources, symmetric, null);
+    }
+
+    /**
+     * @param sources          the source vertices
+     * @param symmetric        whether the graph is undirected, the distances are then stored in a half matrix
+     * @param shortestPathTrees if not null, receives the predecessor array of the shortest path tree of
+     *                         each source, shortestPathTrees[source][v] is the vertex before v on the
+     *                         shortest path from source to v, -1 for source and the unreachable vertices
+     * @return the distance matrix, Integer.MAX_VALUE for the unreachable pairs and the sources not given
+     */
+    public IntDistanceMatrix compute(int[] sources, boolean symmetric, int[][] shortestPathTrees) {
+        IntDistanceMatrix distances = new IntDistanceMatrix(compactGraph.getNumberOfVertices(), symmetric, Integer.MAX_VALUE);
+        pool.invoke(new SourceRangeTask(sources, 0, sources.length, distances, shortestPathTrees));
+        return distances;
+    }
+
+    private class SourceRangeTask extends RecursiveAction {
+        private final int[] sources;
+        private final int from;
+        private final int to;
+        private final IntDistanceMatrix distances;
+        private final int[][] shortestPathTrees;
+
+        SourceRangeTask(int[] sources, int from, int to, IntDistanceMatrix distances, int[][] shortestPathTrees) {
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+            this.distances = distances;
+            this.shortestPathTrees = shortestPathTrees;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                int source = sources[from];
+                int numVertices = compactGraph.getNumberOfVertices();
+                int[] row = new int[numVertices];
+                int[] predecessors = new int[numVertices];
+                DijkstraHeapAlgorithm.compute(compactGraph, source, row, predecessors, null, null);
+                if (shortestPathTrees != null) {
+                    shortestPathTrees[source] = predecessors;
+                }
+                // in a half matrix every entry is written by exactly one source
+                int end = distances.isSymmetric() ? source + 1 : numVertices;
+                for (int v = 0; v < end; v++) {
+                    distances.set(source, v, row[v]);
+                }
+            } else if (to > from) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SourceRangeTask(sources, from, middle, distances, shortestPathTrees),
+                        new SourceRangeTask(sources, middle, to, distances, shortestPathTrees));
+            }
+        }
+    }
+}
@@ -1,23 +1,26 @@
 package nl.twente.bms.algo;
 
-import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.IntArrayList;
 import grph.Grph;
 import grph.algo.search.GraphSearchListener;
 import grph.algo.search.SearchResult;
 import grph.algo.search.WeightedSingleSourceSearchAlgorithm;
 import grph.algo.topology.ClassicalGraphs;
 import grph.properties.NumericalProperty;
-import nl.twente.bms.algo.struct.FibonacciHeap;
+import nl.twente.bms.algo.struct.CompactStationGraph;
+import nl.twente.bms.algo.struct.IndexedIntHeap;
+import nl.twente.bms.algo.struct.StationGraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import toools.NotYetImplementedException;
-import toools.set.IntSet;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
- * Computes the shortest paths in the graph, using the Dijkstra algorithm with FibonacciHeap
+ * Computes the shortest paths in the graph, using the Dijkstra algorithm with an indexed heap
+ * on the compact snapshot of the graph. The snapshot a {@link StationGraph} keeps is used if the weights
+ * of the algorithm are the station graph's own, it does not follow the changes of the edges made after
+ * {@link StationGraph#buildCompactGraph()}. Otherwise a snapshot is taken for the search.
  *
  * @author zhaofeng
  * @since 1.0
@@ -35,74 +38,69 @@ public class DijkstraHeapAlgorithm extends WeightedSingleSourceSearchAlgorithm
         if (d != Grph.DIRECTION.out)
             throw new NotYetImplementedException("this direction is not supported: " + d.name());
 
-        SearchResult r = new SearchResult(g.getVertices().getGreatest() + 1);
-        FibonacciHeap<Integer> notYetVisitedVertices = new FibonacciHeap<>();
-        Map<Integer, FibonacciHeap.Entry<Integer>> entries = new HashMap<>();
-
-        for(IntCursor vertexIdCursor: g.getVertices()){
-            int vertexId = vertexIdCursor.value;
-            r.distances[vertexId] = Integer.MAX_VALUE;
-            r.predecessors[vertexId] = -1;
-            entries.put(vertexId, notYetVisitedVertices.enqueue(vertexId, r.distances[vertexId]));
+        // the snapshot of a station graph holds its own weights, it is reused only for these weights
+        CompactStationGraph compactGraph = null;
+        if (g instanceof StationGraph && ((StationGraph) g).getWeightProperty() == getWeightProperty()) {
+            compactGraph = ((StationGraph) g).getCompactGraph();
+        }
+        if (compactGraph == null) {
+            compactGraph = new CompactStationGraph(g, getWeightProperty());
         }
 
-        r.distances[source] = 0;
-        notYetVisitedVertices.decreaseKey(entries.get(source), 0);
+        SearchResult r = new SearchResult(g.getVertices().getGreatest() + 1);
 
         if (listener != null)
             listener.searchStarted();
 
-        int[][] neighbors = g.getOutNeighborhoods();
-
-        while (!notYetVisitedVertices.isEmpty())
-        {
-            int minVertex = notYetVisitedVertices.dequeueMin().getValue();
-            r.visitOrder.add(minVertex);
-
-            if (listener != null)
-                listener.vertexFound(minVertex);
-
-            for (int n : neighbors[minVertex]) {
-                int newDistance = r.distances[minVertex] + weight(g, minVertex, n, getWeightProperty());
-
-                if (newDistance < r.distances[n]) {
-                    r.predecessors[n] = minVertex;
-                    r.distances[n] = newDistance;
-                    FibonacciHeap.Entry<Integer> entry = entries.get(n);
-                    notYetVisitedVertices.decreaseKey(entry, r.distances[n]);
-                }
-            }
-
-        }
+        compute(compactGraph, source, r.distances, r.predecessors, r.visitOrder, listener);
 
         if (listener != null)
             listener.searchCompleted();
 
         return r;
-
     }
 
-    private int weight(Grph g, int src, int dest, NumericalProperty weightProperty)
-    {
-        IntSet connectingEdges = g.getEdgesConnecting(src, dest);
+    /**
+     * Compute the shortest distances from the source on the compact snapshot of a graph
+     *
+     * @param g            the compact graph
+     * @param source       the source vertex
+     * @param distances    filled with the distances, Integer.MAX_VALUE for the unreachable vertices
+     * @param predecessors filled with the predecessors in the shortest path tree, -1 for the source and the unreachable vertices
+     * @param visitOrder   receives the vertices in the order they are settled, can be null
+     * @param listener     the search listener, can be null
+     */
+    public static void compute(CompactStationGraph g, int source, int[] distances, int[] predecessors,
+                               IntArrayList visitOrder, GraphSearchListener listener) {
+        IndexedIntHeap notYetVisitedVertices = new IndexedIntHeap(g.getNumberOfVertices());
+
+        Arrays.fill(distances, Integer.MAX_VALUE);
+        Arrays.fill(predecessors, -1);
+
+        distances[source] = 0;
+        notYetVisitedVertices.insert(source, 0);
 
-        if (connectingEdges.isEmpty())
-            throw new IllegalStateException("vertices are not connected");
+        while (!notYetVisitedVertices.isEmpty())
+        {
+            int minVertex = notYetVisitedVertices.dequeueMin();
+            int minDistance = distances[minVertex];
+            if (visitOrder != null)
+                visitOrder.add(minVertex);
 
-        int w = Integer.MAX_VALUE;
+            if (listener != null)
+                listener.vertexFound(minVertex);
 
-        for (IntCursor c : connectingEdges)
-        {
-            int e = c.value;
-            int p = weightProperty == null ? 1 : weightProperty.getValueAsInt(e);
+            for (int i = g.getOutStart(minVertex), end = g.getOutEnd(minVertex); i < end; i++) {
+                int n = g.getNeighbor(i);
+                int newDistance = minDistance + g.getWeight(i);
 
-            if (p < w)
-            {
-                w = p;
+                if (newDistance < distances[n]) {
+                    predecessors[n] = minVertex;
+                    distances[n] = newDistance;
+                    notYetVisitedVertices.insertOrDecrease(n, newDistance);
+                }
             }
         }
-
-        return w;
     }
 
     @Override
@@ -2,23 +2,25 @@ package nl.twente.bms.algo;
 
 import grph.Grph;
 import grph.algo.search.GraphSearchListener;
-import grph.algo.search.SearchResult;
-import grph.path.SearchResultWrappedPath;
-import nl.twente.bms.algo.struct.FibonacciHeap;
+import grph.path.ArrayPath;
+import grph.path.Path;
+import nl.twente.bms.algo.struct.IndexedIntHeap;
+import nl.twente.bms.algo.struct.SearchWorkspace;
+import nl.twente.bms.algo.struct.TimeExpandedAdjacency;
 import nl.twente.bms.algo.struct.TimeExpandedGraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import toools.NotYetImplementedException;
-import toools.set.IntSet;
 
-import com.carrotsearch.hppc.cursors.IntCursor;
-
-import java.util.HashMap;
-import java.util.Map;
+import com.carrotsearch.hppc.IntArrayList;
 
 /**
  * Computes the shortest paths in the graph, using the enhanced Dijkstra algorithm.
  *
+ * In the goal directed mode it is an A* search: the priority of a vertex is its distance plus the
+ * travel time lower bound from its station to the destination station. The bound is consistent,
+ * so the first settled vertex of the destination station is still the earliest one.
+ *
  * @author zhaofeng
  * @since 1.0
  */
@@ -26,44 +28,83 @@ public class DijkstraTimeExpandedAlgorithm
 {
     private static final Logger logger = LoggerFactory.getLogger(DijkstraTimeExpandedAlgorithm.class);
     private final TimeExpandedGraph tGraph;
+    private final boolean goalDirected;
 
     public DijkstraTimeExpandedAlgorithm(TimeExpandedGraph tGraph)
+    {
+        this(tGraph, false);
+    }
+
+    public DijkstraTimeExpandedAlgorithm(TimeExpandedGraph tGraph, boolean goalDirected)
     {
         this.tGraph = tGraph;
+        this.goalDirected = goalDirected;
+    }
+
+
+    public Path compute(int source, int destinationStationId, int volume, Grph.DIRECTION d, GraphSearchListener listener)
+    {
+        return compute(source, destinationStationId, volume, Integer.MAX_VALUE, d, listener);
     }
 
+    public Path compute(int source, int destinationStationId, int volume, int latestArrivalTime,
+                        Grph.DIRECTION d, GraphSearchListener listener)
+    {
+        return compute(new int[]{source}, new int[]{0}, destinationStationId, volume, latestArrivalTime, null, d, listener);
+    }
 
-    public SearchResultWrappedPath compute(int source, int destinationStationId, int volume, Grph.DIRECTION d, GraphSearchListener listener)
+    /**
+     * Search the shortest path from any of the source time vertices to any time vertex of the destination station.
+     * The search state lives in the {@link SearchWorkspace} of the calling thread and is reused across searches.
+     *
+     * Every source starts with its own initial distance, e.g. the waiting time before its departure,
+     * so one search answers for all the sources. A source given twice keeps its smallest initial distance.
+     * The vertices that can not reach the destination station before the latest arrival time,
+     * according to the travel time lower bounds, are not expanded.
+     *
+     * @param sources           the source time vertices
+     * @param sourceDistances   the initial distance of each source
+     * @param latestArrivalTime the latest time to arrive at the destination station
+     * @param deadVertices      if not null, receives the dead vertices met by the search,
+     *                          the search itself does not change the graph
+     * @return the path starting at one of the sources, or null if no time vertex of the destination station
+     *         is reachable in time
+     */
+    public Path compute(int[] sources, int[] sourceDistances, int destinationStationId, int volume,
+                        int latestArrivalTime, IntArrayList deadVertices, Grph.DIRECTION d,
+                        GraphSearchListener listener)
     {
         if (d != Grph.DIRECTION.out)
             throw new NotYetImplementedException("this direction is not supported: " + d.name());
 
-        SearchResult r = new SearchResult(tGraph.getVertices().getGreatest() + 1);
-        FibonacciHeap<Integer> notYetVisitedVertices = new FibonacciHeap<>();
-        Map<Integer, FibonacciHeap.Entry<Integer>> entries = new HashMap<>();
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+        TimeExpandedAdjacency adjacency = tGraph.getAdjacency();
+        workspace.begin(adjacency.getNumberOfVertices());
+        IndexedIntHeap notYetVisitedVertices = workspace.getHeap();
         int destination = -1;
 
-        for(IntCursor vertexIdCursor: tGraph.getVertices()){
-            int vertexId = vertexIdCursor.value;
-            r.distances[vertexId] = Integer.MAX_VALUE;
-            r.predecessors[vertexId] = -1;
-            entries.put(vertexId, notYetVisitedVertices.enqueue(vertexId, r.distances[vertexId]));
-        }
+        // only the reached vertices are enqueued
+        for (int i = 0; i < sources.length; i++)
+        {
+            int source = sources[i];
+            int sourceLowerBound = tGraph.getTravelTimeLowerBound(source, destinationStationId);
+            if (!canArriveInTime(source, sourceLowerBound, latestArrivalTime)) continue;
 
-        r.distances[source] = 0;
-        notYetVisitedVertices.decreaseKey(entries.get(source), 0);
+            if (sourceDistances[i] < workspace.getDistance(source))
+            {
+                workspace.setDistance(source, sourceDistances[i], -1);
+                notYetVisitedVertices.insertOrDecrease(source,
+                        goalDirected ? sourceDistances[i] + sourceLowerBound : sourceDistances[i]);
+            }
+        }
 
         if (listener != null)
             listener.searchStarted();
 
         while (!notYetVisitedVertices.isEmpty())
         {
-            int minVertex = notYetVisitedVertices.dequeueMin().getValue();
-            //all the remaining vertices are not accessible from the source
-            if(r.distances[minVertex] == Integer.MAX_VALUE){
-                break;
-            }
-            r.visitOrder.add(minVertex);
+            int minVertex = notYetVisitedVertices.dequeueMin();
+            workspace.markVisited(minVertex);
 
             if (listener != null)
                 listener.vertexFound(minVertex);
@@ -73,24 +114,30 @@ public class DijkstraTimeExpandedAlgorithm
                 break;
             }
 
-            for (IntCursor vCursor : tGraph.getOutNeighbors(minVertex))
+            int minDistance = workspace.getDistance(minVertex);
+            for (int i = 0, degree = adjacency.getOutDegree(minVertex); i < degree; i++)
             {
-                int v = vCursor.value;
+                int v = adjacency.getOutNeighbor(minVertex, i);
+                if(adjacency.isRemoved(v) || workspace.isVisited(v)){
+                    continue;
+                }
                 if(tGraph.isMarkedRemoved(v)){
-                    tGraph.removeVertex(v);
+                    if (deadVertices != null) deadVertices.add(v);
                     continue;
                 }
-                if(!tGraph.hasCapacity(v, volume)){
+                if(!tGraph.hasCapacity(minVertex, v, volume)){
                     continue;
                 }
-                int newDistance = r.distances[minVertex] + weight(minVertex, v);
+                int newDistance = minDistance + adjacency.getOutWeight(minVertex, i);
 
-                if (newDistance < r.distances[v])
+                if (newDistance < workspace.getDistance(v))
                 {
-                    r.predecessors[v] = minVertex;
-                    r.distances[v] = newDistance;
-                    FibonacciHeap.Entry<Integer>  entry = entries.get(v);
-                    notYetVisitedVertices.decreaseKey(entry, r.distances[v]);
+                    int vLowerBound = tGraph.getTravelTimeLowerBound(v, destinationStationId);
+                    // the destination station can not be reached from v in time
+                    if (!canArriveInTime(v, vLowerBound, latestArrivalTime)) continue;
+
+                    workspace.setDistance(v, newDistance, minVertex);
+                    notYetVisitedVertices.insertOrDecrease(v, goalDirected ? newDistance + vLowerBound : newDistance);
                 }
             }
         }
@@ -100,29 +147,29 @@ public class DijkstraTimeExpandedAlgorithm
 
         if(destination == -1) return null;
 
-        return new SearchResultWrappedPath(r, source, destination);
+        return toPath(workspace, destination);
     }
 
-    private int weight(int src, int dest)
+    private boolean canArriveInTime(int vertexId, int lowerBound, int latestArrivalTime)
     {
-        IntSet connectingEdges = tGraph.getEdgesConnecting(src, dest);
-
-        if (connectingEdges.isEmpty())
-            throw new IllegalStateException("vertices are not connected");
-
-        int w = Integer.MAX_VALUE;
+        return lowerBound != Integer.MAX_VALUE
+                && (long) tGraph.getTimeFromVertexId(vertexId) + lowerBound <= latestArrivalTime;
+    }
 
-        for (IntCursor c : connectingEdges)
+    private static Path toPath(SearchWorkspace workspace, int destination)
+    {
+        IntArrayList vertices = new IntArrayList();
+        for (int v = destination; v != -1; v = workspace.getPredecessor(v))
         {
-            int e = c.value;
-            int p = tGraph.getWeightProperty() == null ? 1 : tGraph.getWeightProperty().getValueAsInt(e);
-
-            if (p < w)
-            {
-                w = p;
-            }
+            vertices.add(v);
         }
-
-        return w;
+        int[] vertexArray = vertices.toArray();
+        for (int i = 0, j = vertexArray.length - 1; i < j; i++, j--)
+        {
+            int tmp = vertexArray[i];
+            vertexArray[i] = vertexArray[j];
+            vertexArray[j] = tmp;
+        }
+        return new ArrayPath(vertexArray);
     }
-}
\ No newline at end of file
+}
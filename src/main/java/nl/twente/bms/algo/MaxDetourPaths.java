@@ -1,27 +1,41 @@
 package nl.twente.bms.algo;
 
-import com.carrotsearch.hppc.cursors.IntCursor;
-import com.google.common.collect.Table;
 import grph.Grph;
 import grph.GrphAlgorithm;
 import grph.path.Path;
-import grph.properties.NumericalProperty;
+import nl.twente.bms.algo.struct.CompactStationGraph;
+import nl.twente.bms.algo.struct.IntDistanceMatrix;
 import nl.twente.bms.algo.struct.WeightedSmartPath;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 /**
+ * Enumerates the simple paths from a source to a destination whose weight is within a bound.
+ *
+ * The enumeration is a depth first search with an explicit stack, a branch is cut as soon as the
+ * shortest distance to the destination exceeds the remaining weight. The branches of the first
+ * edges out of the source are searched in parallel as fork-join tasks.
+ *
  * Created by zhaofeng on 10/24/15.
  */
 public class MaxDetourPaths extends GrphAlgorithm<Collection<Path>> {
-    private final NumericalProperty weightProperty;
-    private final Table<Integer, Integer, Integer> directDistanceTable;
+    private final CompactStationGraph compactGraph;
+    private final IntDistanceMatrix shortestDistances;
+    private final ForkJoinPool pool;
 
-    public MaxDetourPaths(NumericalProperty weightProperty, Table<Integer, Integer, Integer> directDistanceTable) {
-        this.weightProperty = weightProperty;
-        this.directDistanceTable = directDistanceTable;
+    public MaxDetourPaths(CompactStationGraph compactGraph, IntDistanceMatrix shortestDistances) {
+        this(compactGraph, shortestDistances, ForkJoinPool.commonPool());
+    }
+
+    public MaxDetourPaths(CompactStationGraph compactGraph, IntDistanceMatrix shortestDistances, ForkJoinPool pool) {
+        this.compactGraph = compactGraph;
+        this.shortestDistances = shortestDistances;
+        this.pool = pool;
     }
 
     @Override
@@ -29,44 +43,121 @@ public class MaxDetourPaths extends GrphAlgorithm<Collection<Path>> {
         throw new IllegalStateException("unsupported");
     }
 
-    public Collection<WeightedSmartPath> compute(Grph grph, int source, int destination, double maxWeight) {
+    public Collection<WeightedSmartPath> compute(int source, int destination, double maxWeight) {
+        ConcurrentLinkedQueue<WeightedSmartPath> paths = new ConcurrentLinkedQueue<>();
+        compute(source, destination, maxWeight, paths::add);
+        return new ArrayList<>(paths);
+    }
+
+    /**
+     * Stream the paths to the consumer as they are found
+     *
+     * @param consumer receives the paths, it is called concurrently from the pool threads
+     */
+    public void compute(int source, int destination, double maxWeight, Consumer<WeightedSmartPath> consumer) {
         assert maxWeight >= 0 : "maxLen: " + maxWeight + " is less than 0";
 
-        ArrayList<WeightedSmartPath> pathList = new ArrayList<WeightedSmartPath>();
-        WeightedSmartPath currentPath = new WeightedSmartPath();
-        currentPath.setSource(source);
+        if (source == destination) {
+            WeightedSmartPath path = new WeightedSmartPath();
+            path.setSource(source);
+            consumer.accept(path);
+            return;
+        }
 
-        DFS(grph, source, destination, maxWeight, currentPath, pathList);
+        ArrayList<BranchTask> branches = new ArrayList<>();
+        for (int i = compactGraph.getOutStart(source), end = compactGraph.getOutEnd(source); i < end; i++) {
+            if (isPromising(compactGraph.getNeighbor(i), destination, maxWeight - compactGraph.getWeight(i))) {
+                branches.add(new BranchTask(source, i, destination, maxWeight, consumer));
+            }
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(branches);
+            }
+        });
+    }
 
-        return pathList;
+    private boolean isPromising(int vertex, int destination, double remainingWeight) {
+        return remainingWeight >= 0 && shortestDistances.get(vertex, destination) <= remainingWeight;
     }
 
+    /**
+     * The search of all the paths starting with one edge out of the source
+     */
+    private class BranchTask extends RecursiveAction {
+        private final int source;
+        private final int firstArc;
+        private final int destination;
+        private final double maxWeight;
+        private final Consumer<WeightedSmartPath> consumer;
+
+        BranchTask(int source, int firstArc, int destination, double maxWeight, Consumer<WeightedSmartPath> consumer) {
+            this.source = source;
+            this.firstArc = firstArc;
+            this.destination = destination;
+            this.maxWeight = maxWeight;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            int numVertices = compactGraph.getNumberOfVertices();
+            // vertices[depth] is the vertex at depth of the current path, arcs[depth] the arc leaving it
+            int[] vertices = new int[numVertices];
+            int[] arcs = new int[numVertices];
+            int[] nextArcs = new int[numVertices];
+            double[] remainingWeights = new double[numVertices];
+            boolean[] onPath = new boolean[numVertices];
+
+            int first = compactGraph.getNeighbor(firstArc);
+            vertices[0] = source;
+            arcs[0] = firstArc;
+            onPath[source] = true;
+            if (first == destination) {
+                emit(vertices, arcs, 1);
+                return;
+            }
+
+            int depth = 1;
+            vertices[1] = first;
+            remainingWeights[1] = maxWeight - compactGraph.getWeight(firstArc);
+            nextArcs[1] = compactGraph.getOutStart(first);
+            onPath[first] = true;
 
-    private void DFS(Grph grph, int currentVertex, int destination, double remainingWeight,
-                     WeightedSmartPath currentPath, ArrayList<WeightedSmartPath> pathList) {
-
-        if (currentVertex == destination) {
-            WeightedSmartPath clonedPath = (WeightedSmartPath) currentPath.clone();
-            pathList.add(clonedPath);
-        } else {
-            Iterator<IntCursor> iter = grph.getOutEdges(currentVertex).iterator();
-            while (iter.hasNext()) {
-                int edge = iter.next().value;
-                int edgeWeight = weightProperty.getValueAsInt(edge);
-                int neighbor = grph.getTheOtherVertex(edge, currentVertex);
-
-                boolean noDirectDistance = directDistanceTable.get(neighbor, destination) == null;
-
-                double newRemainingWeight = remainingWeight - edgeWeight;
-                if (newRemainingWeight >= 0
-                        && (noDirectDistance || directDistanceTable.get(neighbor, destination) <= newRemainingWeight)
-                        && !currentPath.containsVertex(neighbor)) {
-                    currentPath.extend(edge, neighbor, edgeWeight);
-                    DFS(grph, neighbor, destination, newRemainingWeight, currentPath, pathList);
-                    currentPath.removeLast();
+            while (depth > 0) {
+                int v = vertices[depth];
+                if (nextArcs[depth] == compactGraph.getOutEnd(v)) {
+                    onPath[v] = false;
+                    depth--;
+                    continue;
+                }
+
+                int i = nextArcs[depth]++;
+                int neighbor = compactGraph.getNeighbor(i);
+                double remainingWeight = remainingWeights[depth] - compactGraph.getWeight(i);
+                if (onPath[neighbor] || !isPromising(neighbor, destination, remainingWeight)) continue;
+
+                arcs[depth] = i;
+                if (neighbor == destination) {
+                    emit(vertices, arcs, depth + 1);
+                } else {
+                    depth++;
+                    vertices[depth] = neighbor;
+                    remainingWeights[depth] = remainingWeight;
+                    nextArcs[depth] = compactGraph.getOutStart(neighbor);
+                    onPath[neighbor] = true;
                 }
             }
         }
-    }
 
+        private void emit(int[] vertices, int[] arcs, int numArcs) {
+            WeightedSmartPath path = new WeightedSmartPath();
+            path.setSource(vertices[0]);
+            for (int k = 0; k < numArcs; k++) {
+                path.extend(compactGraph.getEdge(arcs[k]), compactGraph.getNeighbor(arcs[k]), compactGraph.getWeight(arcs[k]));
+            }
+            consumer.accept(path);
+        }
+    }
 }
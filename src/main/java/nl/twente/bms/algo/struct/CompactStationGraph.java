@@ -0,0 +1,110 @@
+package nl.twente.bms.algo.struct;
+
+import com.carrotsearch.hppc.cursors.IntCursor;
+import grph.Grph;
+import grph.properties.NumericalProperty;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * An immutable compressed sparse row snapshot of the out adjacency of a graph.
+ *
+ * The out edges of vertex v are stored at the positions [getOutStart(v), getOutEnd(v)) of the
+ * neighbor, weight and edge arrays, so that the shortest path algorithms iterate over contiguous
+ * primitive memory instead of the incidence structures of grph.
+ * An undirected edge appears in the out edges of both its end vertices.
+ *
+ * @author Feng Zhao (feng.zhao@feedzai.com)
+ * @since 1.0
+ */
+public final class CompactStationGraph {
+    // vertex --> start position of its out edges, offsets[v+1] is the end position
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final int[] weights;
+    private final int[] edges;
+
+    /**
+     * Take a snapshot of the graph, later changes of the graph are not reflected
+     *
+     * @param g              the graph
+     * @param weightProperty the edge weights, null means every edge weighs 1
+     */
+    public CompactStationGraph(Grph g, NumericalProperty weightProperty) {
+        int numVertices = g.getVertices().isEmpty() ? 0 : g.getVertices().getGreatest() + 1;
+        offsets = new int[numVertices + 1];
+
+        for (IntCursor vertexCursor : g.getVertices()) {
+            offsets[vertexCursor.value + 1] = g.getOutEdges(vertexCursor.value).size();
+        }
+        for (int v = 0; v < numVertices; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+
+        int numArcs = offsets[numVertices];
+        neighbors = new int[numArcs];
+        weights = new int[numArcs];
+        edges = new int[numArcs];
+
+        int[] next = Arrays.copyOf(offsets, numVertices);
+        for (IntCursor vertexCursor : g.getVertices()) {
+            int v = vertexCursor.value;
+            for (IntCursor edgeCursor : g.getOutEdges(v)) {
+                int e = edgeCursor.value;
+                int i = next[v]++;
+                neighbors[i] = g.getTheOtherVertex(e, v);
+                weights[i] = weightProperty == null ? 1 : weightProperty.getValueAsInt(e);
+                edges[i] = e;
+            }
+        }
+    }
+
+    private CompactStationGraph(CompactStationGraph g, int[] weights) {
+        this.offsets = g.offsets;
+        this.neighbors = g.neighbors;
+        this.edges = g.edges;
+        this.weights = weights;
+    }
+
+    /**
+     * Get the same graph with other weights, the structure arrays are shared
+     *
+     * @param weightFunction maps the weight of an edge to its new weight
+     * @return the graph with the new weights
+     */
+    public CompactStationGraph mapWeights(IntUnaryOperator weightFunction) {
+        int[] newWeights = new int[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            newWeights[i] = weightFunction.applyAsInt(weights[i]);
+        }
+        return new CompactStationGraph(this, newWeights);
+    }
+
+    /**
+     * @return the upper bound (exclusive) of the vertex ids
+     */
+    public int getNumberOfVertices() {
+        return offsets.length - 1;
+    }
+
+    public int getOutStart(int v) {
+        return offsets[v];
+    }
+
+    public int getOutEnd(int v) {
+        return offsets[v + 1];
+    }
+
+    public int getNeighbor(int i) {
+        return neighbors[i];
+    }
+
+    public int getWeight(int i) {
+        return weights[i];
+    }
+
+    public int getEdge(int i) {
+        return edges[i];
+    }
+}
@@ -0,0 +1,158 @@
+package nl.twente.bms.algo.struct;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * An indexed 4-ary min-heap of int elements with int priorities.
+ *
+ * Elements are non-negative ids (e.g. vertex ids) and the heap keeps the position of every
+ * element in a plain int array, so that decreaseKey does not need any entry object.
+ * Elements are only inserted when they are reached, thus the cost of a search depends on
+ * the number of reached elements instead of the number of elements in the graph.
+ *
+ * @author Feng Zhao (feng.zhao@feedzai.com)
+ * @since 1.0
+ */
+public final class IndexedIntHeap {
+    private static final int ARITY = 4;
+    private static final int NOT_IN_HEAP = -1;
+
+    // heap position --> element
+    private int[] elements;
+    // heap position --> priority
+    private int[] priorities;
+    // element --> heap position
+    private int[] positions;
+    private int size;
+
+    public IndexedIntHeap() {
+        this(16);
+    }
+
+    public IndexedIntHeap(int capacity) {
+        capacity = Math.max(capacity, 1);
+        elements = new int[capacity];
+        priorities = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, NOT_IN_HEAP);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int element) {
+        return element < positions.length && positions[element] != NOT_IN_HEAP;
+    }
+
+    /**
+     * Insert the element with the given priority, or decrease its priority if it is already in the heap.
+     * A priority that is not smaller than the current one is ignored.
+     *
+     * @param element  the element id
+     * @param priority the new priority
+     */
+    public void insertOrDecrease(int element, int priority) {
+        if (contains(element)) {
+            decreaseKey(element, priority);
+        } else {
+            insert(element, priority);
+        }
+    }
+
+    public void insert(int element, int priority) {
+        assert !contains(element) : "element already in heap: " + element;
+        ensureElementCapacity(element);
+        if (size == elements.length) {
+            int newLength = elements.length << 1;
+            elements = Arrays.copyOf(elements, newLength);
+            priorities = Arrays.copyOf(priorities, newLength);
+        }
+        siftUp(size++, element, priority);
+    }
+
+    public void decreaseKey(int element, int priority) {
+        int position = positions[element];
+        assert position != NOT_IN_HEAP : "element not in heap: " + element;
+        if (priority < priorities[position]) {
+            siftUp(position, element, priority);
+        }
+    }
+
+    public int peekMinPriority() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        return priorities[0];
+    }
+
+    /**
+     * Remove the element with the smallest priority
+     *
+     * @return the removed element
+     */
+    public int dequeueMin() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        int min = elements[0];
+        positions[min] = NOT_IN_HEAP;
+        if (--size > 0) {
+            siftDown(0, elements[size], priorities[size]);
+        }
+        return min;
+    }
+
+    /**
+     * Empty the heap, the cost is proportional to the number of remaining elements
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[elements[i]] = NOT_IN_HEAP;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int position, int element, int priority) {
+        while (position > 0) {
+            int parent = (position - 1) / ARITY;
+            if (priorities[parent] <= priority) break;
+            place(position, elements[parent], priorities[parent]);
+            position = parent;
+        }
+        place(position, element, priority);
+    }
+
+    private void siftDown(int position, int element, int priority) {
+        while (true) {
+            int firstChild = position * ARITY + 1;
+            if (firstChild >= size) break;
+            int lastChild = Math.min(firstChild + ARITY, size);
+            int minChild = firstChild;
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (priorities[child] < priorities[minChild]) minChild = child;
+            }
+            if (priorities[minChild] >= priority) break;
+            place(position, elements[minChild], priorities[minChild]);
+            position = minChild;
+        }
+        place(position, element, priority);
+    }
+
+    private void place(int position, int element, int priority) {
+        elements[position] = element;
+        priorities[position] = priority;
+        positions[element] = position;
+    }
+
+    private void ensureElementCapacity(int element) {
+        if (element >= positions.length) {
+            int oldLength = positions.length;
+            positions = Arrays.copyOf(positions, Math.max(element + 1, oldLength << 1));
+            Arrays.fill(positions, oldLength, positions.length, NOT_IN_HEAP);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package nl.twente.bms.algo.struct;
+
+import java.util.Arrays;
+
+/**
+ * A dense int matrix of distances indexed by vertex id, stored in one flat array.
+ *
+ * In the symmetric mode only the lower triangle is stored, distance(u, v) and distance(v, u)
+ * share one entry and the matrix takes n * (n + 1) / 2 ints instead of n * n.
+ *
+ * @author Feng Zhao (feng.zhao@feedzai.com)
+ * @since 1.0
+ */
+public final class IntDistanceMatrix {
+    private final int size;
+    private final boolean symmetric;
+    private final int[] distances;
+
+    /**
+     * @param size         the upper bound (exclusive) of the vertex ids
+     * @param symmetric    whether distance(u, v) always equals distance(v, u)
+     * @param defaultValue the initial value of every entry
+     */
+    public IntDistanceMatrix(int size, boolean symmetric, int defaultValue) {
+        long length = symmetric ? (long) size * (size + 1) / 2 : (long) size * size;
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("too many vertices for a distance matrix: " + size);
+
+        this.size = size;
+        this.symmetric = symmetric;
+        this.distances = new int[(int) length];
+        Arrays.fill(distances, defaultValue);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    public int get(int u, int v) {
+        return distances[index(u, v)];
+    }
+
+    public void set(int u, int v, int distance) {
+        distances[index(u, v)] = distance;
+    }
+
+    private int index(int u, int v) {
+        assert u >= 0 && u < size : "vertex out of range: " + u;
+        assert v >= 0 && v < size : "vertex out of range: " + v;
+
+        if (!symmetric) return u * size + v;
+        return u >= v ? (u * (u + 1) >>> 1) + v : (v * (v + 1) >>> 1) + u;
+    }
+}
@@ -0,0 +1,83 @@
+package nl.twente.bms.algo.struct;
+
+/**
+ * The load a driver carries over time, in minutes.
+ *
+ * The timeline is a segment tree over the minutes from its start time to its end time, both included,
+ * so that adding a load to a time interval and getting the greatest load in a time interval both take
+ * O(log n) for n minutes. A node keeps the load added to its whole interval and the greatest load in
+ * its interval, the loads are not pushed down to the children.
+ * The times before the start time are counted as the start time, the times after the end time
+ * as the end time, so the timeline never reports less load than it carries.
+ *
+ * @author Feng Zhao (feng.zhao@feedzai.com)
+ * @since 1.0
+ */
+public final class LoadTimeline {
+    private final int startTime;
+    private final int numMinutes;
+
+    // node --> load added to the whole interval of the node
+    private final int[] addedLoads;
+    // node --> greatest load in the interval of the node, the loads added to its ancestors excluded
+    private final int[] maxLoads;
+
+    public LoadTimeline(int startTime, int endTime) {
+        assert endTime >= startTime : "startTime: " + startTime + ", endTime: " + endTime;
+        this.startTime = startTime;
+        this.numMinutes = endTime - startTime + 1;
+        int numLeaves = Integer.highestOneBit(numMinutes);
+        if (numLeaves < numMinutes) numLeaves <<= 1;
+        addedLoads = new int[2 * numLeaves];
+        maxLoads = new int[2 * numLeaves];
+    }
+
+    private int getMinute(int time) {
+        return Math.min(Math.max(time - startTime, 0), numMinutes - 1);
+    }
+
+    /**
+     * Add the load from the time from, included, to the time to, excluded
+     */
+    public void addLoad(int from, int to, int load) {
+        if (to <= from) return;
+        addLoad(1, 0, numMinutes - 1, getMinute(from), getMinute(to - 1), load);
+    }
+
+    private void addLoad(int node, int nodeFrom, int nodeTo, int from, int to, int load) {
+        if (from <= nodeFrom && nodeTo <= to) {
+            addedLoads[node] += load;
+            maxLoads[node] += load;
+            return;
+        }
+        int middle = (nodeFrom + nodeTo) >>> 1;
+        if (from <= middle) addLoad(2 * node, nodeFrom, middle, from, to, load);
+        if (to > middle) addLoad(2 * node + 1, middle + 1, nodeTo, from, to, load);
+        maxLoads[node] = addedLoads[node] + Math.max(maxLoads[2 * node], maxLoads[2 * node + 1]);
+    }
+
+    /**
+     * @return the greatest load from the time from, included, to the time to, excluded, 0 if the interval is empty
+     */
+    public int getMaxLoad(int from, int to) {
+        if (to <= from) return 0;
+        return getMaxLoad(1, 0, numMinutes - 1, getMinute(from), getMinute(to - 1));
+    }
+
+    private int getMaxLoad(int node, int nodeFrom, int nodeTo, int from, int to) {
+        if (from <= nodeFrom && nodeTo <= to) return maxLoads[node];
+
+        int middle = (nodeFrom + nodeTo) >>> 1;
+        int maxLoad = 0;
+        if (from <= middle) maxLoad = getMaxLoad(2 * node, nodeFrom, middle, from, to);
+        if (to > middle) maxLoad = Math.max(maxLoad, getMaxLoad(2 * node + 1, middle + 1, nodeTo, from, to));
+        return addedLoads[node] + maxLoad;
+    }
+
+    /**
+     * @return the load at the time
+     */
+    public int getLoad(int time) {
+        return getMaxLoad(time, time + 1);
+    }
+}
@@ -0,0 +1,129 @@
+package nl.twente.bms.algo.struct;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongIntOpenHashMap;
+import com.carrotsearch.hppc.LongOpenHashSet;
+
+/**
+ * The time vertices and travel arcs one offer adds to the time expanded graph, recorded apart from the graph.
+ *
+ * The vertices are numbered locally, in the order they are added. The vertex and arc additions are
+ * kept as one sequence of operations, so that adding the subgraph to a time expanded graph creates
+ * the vertices and arcs in the same order as building them in the graph directly.
+ * The subgraph only depends on the offer route and its departure time, not on the offer id,
+ * so it can be reused for another offer with the same route and departure time.
+ * It also keeps the stations within a detour of the route it was built from, in the order of the station graph,
+ * so the subgraph of a continuation of the offer only scans these stations instead of the whole station graph.
+ *
+ * @author Feng Zhao (feng.zhao@feedzai.com)
+ * @since 1.0
+ */
+public final class OfferSubgraph {
+    // [ADD_VERTEX, time, station] adds the next local vertex
+    static final int ADD_VERTEX = 0;
+    // [ADD_ARC, local source, local target, weight]
+    static final int ADD_ARC = 1;
+
+    private final int departureTime;
+    private final IntArrayList operations;
+    private int numVertices;
+    private int targetTime;
+    // the stations v with d(source, v) + d(v, target) <= candidateDetour, the target excluded
+    private int[] candidateStations;
+    private int candidateDetour;
+
+    // (time, station) --> local vertex, only needed while the subgraph is built
+    private LongIntOpenHashMap vertexIndex;
+    // (local source, local target) of the arcs, only needed while the subgraph is built
+    private LongOpenHashSet arcIndex;
+
+    public OfferSubgraph(int departureTime) {
+        this.departureTime = departureTime;
+        this.operations = new IntArrayList();
+        this.vertexIndex = new LongIntOpenHashMap();
+        this.arcIndex = new LongOpenHashSet();
+    }
+
+    private static long pairKey(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the local vertex of the station at the time, a new one if there is none yet
+     */
+    public int addVertex(int time, int stationId) {
+        long key = pairKey(time, stationId);
+        if (vertexIndex.containsKey(key)) return vertexIndex.lget();
+
+        int vertex = numVertices++;
+        vertexIndex.put(key, vertex);
+        operations.add(ADD_VERTEX, time);
+        operations.add(stationId);
+        return vertex;
+    }
+
+    /**
+     * Add the arc unless the two local vertices are already connected
+     */
+    public void addArcIfAbsent(int u, int v, int weight) {
+        if (arcIndex.add(pairKey(u, v))) {
+            operations.add(ADD_ARC, u);
+            operations.add(v, weight);
+        }
+    }
+
+    /**
+     * Drop the indexes used to build the subgraph, no vertex or arc can be added afterwards
+     */
+    public void trimToSize() {
+        vertexIndex = null;
+        arcIndex = null;
+        operations.trimToSize();
+    }
+
+    public int getDepartureTime() {
+        return departureTime;
+    }
+
+    /**
+     * @return the arrival time at the offer target on the direct route
+     */
+    public int getTargetTime() {
+        return targetTime;
+    }
+
+    public void setTargetTime(int targetTime) {
+        this.targetTime = targetTime;
+    }
+
+    /**
+     * @return the stations within the candidate detour of the route, in the order of the station graph
+     */
+    public int[] getCandidateStations() {
+        return candidateStations;
+    }
+
+    /**
+     * @return the detour the candidate stations are within, at least the max detour of the offer
+     */
+    public int getCandidateDetour() {
+        return candidateDetour;
+    }
+
+    public void setCandidateStations(int[] candidateStations, int candidateDetour) {
+        this.candidateStations = candidateStations;
+        this.candidateDetour = candidateDetour;
+    }
+
+    public int getNumberOfVertices() {
+        return numVertices;
+    }
+
+    int[] getOperations() {
+        return operations.buffer;
+    }
+
+    int getOperationsLength() {
+        return operations.size();
+    }
+}
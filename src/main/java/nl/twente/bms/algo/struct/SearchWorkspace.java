@@ -0,0 +1,94 @@
+package nl.twente.bms.algo.struct;
+
+import java.util.Arrays;
+
+/**
+ * The reusable state of a single source search: distances, predecessors, visited marks and the heap.
+ *
+ * The arrays are kept between searches and reset lazily: every entry carries the epoch of the search
+ * that wrote it, and an entry with an older epoch reads as unreached. Starting a new search is O(1)
+ * apart from the occasional growth of the arrays.
+ *
+ * A workspace is not thread safe, use {@link #forCurrentThread()} to get the one of the calling thread.
+ *
+ * @author Feng Zhao (feng.zhao@feedzai.com)
+ * @since 1.0
+ */
+public final class SearchWorkspace {
+    private static final ThreadLocal<SearchWorkspace> WORKSPACES = ThreadLocal.withInitial(SearchWorkspace::new);
+
+    private int[] distances;
+    private int[] predecessors;
+    private int[] reachedEpochs;
+    private int[] visitedEpochs;
+    private final IndexedIntHeap heap;
+    private int epoch;
+
+    public SearchWorkspace() {
+        this(16);
+    }
+
+    public SearchWorkspace(int capacity) {
+        distances = new int[capacity];
+        predecessors = new int[capacity];
+        reachedEpochs = new int[capacity];
+        visitedEpochs = new int[capacity];
+        heap = new IndexedIntHeap(capacity);
+        epoch = 0;
+    }
+
+    public static SearchWorkspace forCurrentThread() {
+        return WORKSPACES.get();
+    }
+
+    /**
+     * Start a new search, all the vertices become unreached and not visited
+     *
+     * @param numVertices the upper bound (exclusive) of the vertex ids in the searched graph
+     */
+    public void begin(int numVertices) {
+        if (numVertices > distances.length) {
+            int newLength = Math.max(numVertices, distances.length + (distances.length >> 1));
+            distances = Arrays.copyOf(distances, newLength);
+            predecessors = Arrays.copyOf(predecessors, newLength);
+            reachedEpochs = Arrays.copyOf(reachedEpochs, newLength);
+            visitedEpochs = Arrays.copyOf(visitedEpochs, newLength);
+        }
+        heap.clear();
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(reachedEpochs, 0);
+            Arrays.fill(visitedEpochs, 0);
+            epoch = 1;
+        }
+    }
+
+    public IndexedIntHeap getHeap() {
+        return heap;
+    }
+
+    public boolean isReached(int v) {
+        return reachedEpochs[v] == epoch;
+    }
+
+    public int getDistance(int v) {
+        return reachedEpochs[v] == epoch ? distances[v] : Integer.MAX_VALUE;
+    }
+
+    public int getPredecessor(int v) {
+        return reachedEpochs[v] == epoch ? predecessors[v] : -1;
+    }
+
+    public void setDistance(int v, int distance, int predecessor) {
+        reachedEpochs[v] = epoch;
+        distances[v] = distance;
+        predecessors[v] = predecessor;
+    }
+
+    public boolean isVisited(int v) {
+        return visitedEpochs[v] == epoch;
+    }
+
+    public void markVisited(int v) {
+        visitedEpochs[v] = epoch;
+    }
+}
@@ -1,18 +1,20 @@
 package nl.twente.bms.algo.struct;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-import grph.algo.distance.DistanceMatrix;
 import grph.in_memory.InMemoryGrph;
+import grph.path.ArrayPath;
 import grph.path.Path;
 import grph.path.SearchResultWrappedPath;
 import grph.properties.NumericalProperty;
+import nl.twente.bms.algo.AllPairsShortestDistances;
 import nl.twente.bms.algo.DijkstraHeapAlgorithm;
 import nl.twente.bms.algo.MaxDetourPaths;
 import nl.twente.bms.model.elem.Offer;
 
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 
 /**
  * The class to store the station distance weighted graph
@@ -21,18 +23,80 @@ import java.util.Collection;
  * @since 1.0
  */
 public class StationGraph extends InMemoryGrph {
+    // the value of a missing direct distance
+    public static final int NO_DISTANCE = -1;
+
     private final NumericalProperty weightProperty;
-    private final Table<Integer, Integer, Integer> directDistanceTable;
+    private IntDistanceMatrix directDistances;
 
-    private DistanceMatrix shortestDistances;
+    private IntDistanceMatrix shortestDistances;
+    // source --> predecessor array of its shortest path tree
+    private int[][] shortestPathTrees;
+    private IntDistanceMatrix travelTimeLowerBounds;
+    private CompactStationGraph compactGraph;
 
     public StationGraph() {
         weightProperty = new NumericalProperty("weight", 16, 65535);
-        directDistanceTable = HashBasedTable.create();
+    }
+
+    /**
+     * Take the compact snapshot of the station graph used by the distance computations,
+     * it has to be called once all the stations and edges are added, and again after the edges
+     * or their weights change: the snapshot does not follow the changes
+     */
+    public void buildCompactGraph() {
+        compactGraph = new CompactStationGraph(this, weightProperty);
+    }
+
+    /**
+     * @return the compact snapshot of the station graph, null if it is not built yet
+     */
+    public CompactStationGraph getCompactGraph() {
+        return compactGraph;
     }
 
     public void computeAllSourceShortestDistances(){
-        shortestDistances = new DijkstraHeapAlgorithm(getWeightProperty()).computeDistanceMatrix(this);
+        computeAllSourceShortestDistances(false);
+    }
+
+    /**
+     * Compute the shortest distances between all the stations in parallel,
+     * together with the shortest path tree of every station
+     *
+     * @param undirected whether all the edges are undirected, the distances are then stored in a half matrix
+     */
+    public void computeAllSourceShortestDistances(boolean undirected){
+        if (compactGraph == null) buildCompactGraph();
+        shortestPathTrees = new int[compactGraph.getNumberOfVertices()][];
+        shortestDistances = new AllPairsShortestDistances(compactGraph)
+                .compute(getVertices().toIntArray(), undirected, shortestPathTrees);
+    }
+
+    /**
+     * Compute the lower bounds of the travel time in minutes between all the stations.
+     *
+     * The bound of a pair is the shortest path length when every edge weighs its travel time
+     * rounded down at the given speed. The duration of a drive over a shortest path is its distance
+     * rounded down, which is at least the sum of the rounded down edge durations, so the bound
+     * never exceeds the duration of any drive at a speed up to the given one.
+     *
+     * @param maxSpeed the fastest driver speed in km/h
+     */
+    public void computeTravelTimeLowerBounds(double maxSpeed) {
+        if (compactGraph == null) buildCompactGraph();
+        CompactStationGraph travelTimeGraph = compactGraph.mapWeights(distance -> (int) (distance * 60 / maxSpeed));
+        travelTimeLowerBounds = new AllPairsShortestDistances(travelTimeGraph)
+                .compute(getVertices().toIntArray(), shortestDistances != null && shortestDistances.isSymmetric());
+    }
+
+    /**
+     * Get the lower bound of the travel time from source to destination
+     *
+     * @return the lower bound in minutes, 0 if the bounds are not computed,
+     *         Integer.MAX_VALUE if destination is not reachable from source
+     */
+    public int getTravelTimeLowerBound(int source, int destination) {
+        return travelTimeLowerBounds == null ? 0 : travelTimeLowerBounds.get(source, destination);
     }
 
     public NumericalProperty getWeightProperty() {
@@ -53,15 +117,24 @@ public class StationGraph extends InMemoryGrph {
         assert getVertices().contains(u) : "vertex does not exist: " + u;
         assert getVertices().contains(v) : "vertex does not exist: " + v;
 
-        return directDistanceTable.get(u, v);
+        return directDistances == null ? NO_DISTANCE : directDistances.get(u, v);
     }
 
     public void setDirectDistance(int u, int v, int distance) {
         assert getVertices().contains(u) : "vertex does not exist: " + u;
         assert getVertices().contains(v) : "vertex does not exist: " + v;
+        if (directDistances == null)
+            throw new IllegalStateException("the direct distances are not initialized");
 
-        directDistanceTable.put(u, v, distance);
-        directDistanceTable.put(v, u, distance);
+        directDistances.set(u, v, distance);
+    }
+
+    /**
+     * Allocate the direct distances, all missing. The direct distances are symmetric,
+     * it has to be called once all the stations are added and before the first distance is set
+     */
+    public void initDirectDistances() {
+        directDistances = new IntDistanceMatrix(getVertices().getGreatest() + 1, true, NO_DISTANCE);
     }
 
     /**
@@ -73,7 +146,7 @@ public class StationGraph extends InMemoryGrph {
      */
     public int getShortestDistance(int source, int destination) {
         if(shortestDistances != null){
-            return (int) shortestDistances.getDistance(destination, source);
+            return shortestDistances.get(source, destination);
         }
         else{
             return getDistance(getShortestPath(source, destination));
@@ -81,7 +154,36 @@ public class StationGraph extends InMemoryGrph {
     }
 
 
+    /**
+     * @return whether the precomputed shortest distances are those of an undirected graph
+     */
+    public boolean hasSymmetricShortestDistances() {
+        return shortestDistances != null && shortestDistances.isSymmetric();
+    }
+
+    /**
+     * Get the shortest path from source to destination,
+     * walked over the precomputed shortest path tree of source if it is available
+     *
+     * @param source
+     * @param destination
+     * @return the shortest path
+     */
     public Path getShortestPath(int source, int destination) {
+        if (shortestPathTrees != null && shortestPathTrees[source] != null) {
+            int[] predecessors = shortestPathTrees[source];
+            int numVertices = 1;
+            for (int v = destination; v != source; v = predecessors[v]) {
+                // destination is not reachable from source
+                if (predecessors[v] == -1) return new ArrayPath();
+                numVertices++;
+            }
+            int[] vertices = new int[numVertices];
+            for (int i = numVertices - 1, v = destination; i >= 0; i--, v = predecessors[v]) {
+                vertices[i] = v;
+            }
+            return new ArrayPath(vertices);
+        }
         return new SearchResultWrappedPath(new DijkstraHeapAlgorithm(getWeightProperty())
                 .compute(this, source), source, destination);
     }
@@ -104,12 +206,25 @@ public class StationGraph extends InMemoryGrph {
     }
 
     public Collection<WeightedSmartPath> getMaxDetourPaths(int source, int destination, double maxDetour) {
-        int shortestWeight = getShortestDistance(source, destination);
+        ConcurrentLinkedQueue<WeightedSmartPath> paths = new ConcurrentLinkedQueue<>();
+        forEachMaxDetourPath(source, destination, maxDetour, paths::add);
+        return new ArrayList<>(paths);
+    }
+
+    /**
+     * Stream the paths within the max detour to the consumer instead of collecting them.
+     * The shortest distances must be computed before, see {@link #computeAllSourceShortestDistances()}.
+     *
+     * @param consumer receives the paths, it is called concurrently from the fork-join pool threads
+     */
+    public void forEachMaxDetourPath(int source, int destination, double maxDetour,
+                                     Consumer<WeightedSmartPath> consumer) {
+        if (shortestDistances == null)
+            throw new IllegalStateException("the shortest distances are not computed");
 
-        double maxDetourWeight = shortestWeight * (1 + maxDetour);
+        double maxDetourWeight = getShortestDistance(source, destination) * (1 + maxDetour);
 
-        return (new MaxDetourPaths(weightProperty, directDistanceTable)).
-                compute(this, source, destination, maxDetourWeight);
+        new MaxDetourPaths(compactGraph, shortestDistances).compute(source, destination, maxDetourWeight, consumer);
     }
 
     /**
@@ -121,7 +236,6 @@ public class StationGraph extends InMemoryGrph {
     public boolean isFeasible(Offer offer, int detourVertex) {
         int distanceSourceDetourVertex = getShortestDistance(offer.getSource(), detourVertex);
         int distanceDetourVertexTarget = getShortestDistance(detourVertex, offer.getTarget());
-        int distanceSourceTarget = getShortestDistance(offer.getSource(), offer.getTarget());
 
         // detour feasibility
         if (distanceSourceDetourVertex + distanceDetourVertexTarget > offer.getMaxDetour()) return false;
@@ -142,7 +256,6 @@ public class StationGraph extends InMemoryGrph {
         int distanceSourceDetourSource = getShortestDistance(offer.getSource(), detourSource);
         int distanceDetourSourceDetourTarget = getShortestDistance(detourSource, detourTarget);
         int distanceDetourTargetTarget = getShortestDistance(detourTarget, offer.getTarget());
-        int distanceSourceTarget = getShortestDistance(offer.getSource(), offer.getTarget());
 
         // detour feasibility
         if (distanceSourceDetourSource + distanceDetourSourceDetourTarget
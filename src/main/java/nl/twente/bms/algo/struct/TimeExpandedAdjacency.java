@@ -0,0 +1,173 @@
+package nl.twente.bms.algo.struct;
+
+import java.util.Arrays;
+
+/**
+ * The append mostly out adjacency of a time expanded graph, stored in primitive int arrays.
+ *
+ * The vertex ids are allocated consecutively and never reused. The out arcs of a vertex are kept in
+ * insertion order in one int array, each arc takes two slots: the neighbor and the weight.
+ * A removed vertex only gets a tombstone, the arcs of the other vertices to it stay in place and are
+ * skipped by the readers until {@link #compact()} drops them.
+ *
+ * @author Feng Zhao (feng.zhao@feedzai.com)
+ * @since 1.0
+ */
+public final class TimeExpandedAdjacency {
+    private static final int[] NO_ARCS = new int[0];
+    private static final int INITIAL_ARC_CAPACITY = 4;
+
+    // vertex --> [neighbor0, weight0, neighbor1, weight1, ...]
+    private int[][] outArcs;
+    // vertex --> number of out arcs
+    private int[] outDegrees;
+    private boolean[] removed;
+    private int numVertices;
+    private int numRemovedVertices;
+    // the vertices removed since the last compaction
+    private int numTombstones;
+
+    public TimeExpandedAdjacency() {
+        this(16);
+    }
+
+    public TimeExpandedAdjacency(int capacity) {
+        outArcs = new int[capacity][];
+        outDegrees = new int[capacity];
+        removed = new boolean[capacity];
+    }
+
+    /**
+     * @return the new vertex id, one more than the previous one
+     */
+    public int addVertex() {
+        if (numVertices == outArcs.length) {
+            int newLength = Math.max(16, numVertices + (numVertices >> 1));
+            outArcs = Arrays.copyOf(outArcs, newLength);
+            outDegrees = Arrays.copyOf(outDegrees, newLength);
+            removed = Arrays.copyOf(removed, newLength);
+        }
+        outArcs[numVertices] = NO_ARCS;
+        return numVertices++;
+    }
+
+    /**
+     * @return the upper bound (exclusive) of the vertex ids, the removed vertices included
+     */
+    public int getNumberOfVertices() {
+        return numVertices;
+    }
+
+    public int getNumberOfLiveVertices() {
+        return numVertices - numRemovedVertices;
+    }
+
+    public boolean isRemoved(int v) {
+        return removed[v];
+    }
+
+    /**
+     * Remove the vertex, the arcs to it are dropped by the next compaction
+     */
+    public void removeVertex(int v) {
+        if (removed[v]) throw new IllegalArgumentException("vertex is already removed: " + v);
+
+        removed[v] = true;
+        outArcs[v] = NO_ARCS;
+        outDegrees[v] = 0;
+        numRemovedVertices++;
+        numTombstones++;
+    }
+
+    public void addArc(int u, int v, int weight) {
+        assert !removed[u] && !removed[v] : "arc between removed vertices: " + u + "->" + v;
+
+        int[] arcs = outArcs[u];
+        int end = outDegrees[u] << 1;
+        if (end == arcs.length) {
+            arcs = Arrays.copyOf(arcs, Math.max(INITIAL_ARC_CAPACITY << 1, arcs.length << 1));
+            outArcs[u] = arcs;
+        }
+        arcs[end] = v;
+        arcs[end + 1] = weight;
+        outDegrees[u]++;
+    }
+
+    public boolean hasArc(int u, int v) {
+        int[] arcs = outArcs[u];
+        for (int i = 0, end = outDegrees[u] << 1; i < end; i += 2) {
+            if (arcs[i] == v) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove all the arcs from u to v, the order of the other arcs of u is kept
+     */
+    public void removeArcs(int u, int v) {
+        int[] arcs = outArcs[u];
+        int end = outDegrees[u] << 1;
+        int j = 0;
+        for (int i = 0; i < end; i += 2) {
+            if (arcs[i] != v) {
+                arcs[j] = arcs[i];
+                arcs[j + 1] = arcs[i + 1];
+                j += 2;
+            }
+        }
+        outDegrees[u] = j >> 1;
+    }
+
+    /**
+     * @return the number of out arcs of u, the arcs to removed vertices included
+     */
+    public int getOutDegree(int u) {
+        return outDegrees[u];
+    }
+
+    public int getOutNeighbor(int u, int i) {
+        return outArcs[u][i << 1];
+    }
+
+    public int getOutWeight(int u, int i) {
+        return outArcs[u][(i << 1) + 1];
+    }
+
+    /**
+     * Whether enough vertices were removed since the last compaction to make a new one worthwhile
+     */
+    public boolean needsCompaction() {
+        return numTombstones > 64 && numTombstones > (getNumberOfLiveVertices() >> 3);
+    }
+
+    /**
+     * Drop the arcs to the removed vertices. The arc indexes change, so it must not run while
+     * the arcs of a vertex are being iterated.
+     */
+    public void compact() {
+        for (int u = 0; u < numVertices; u++) {
+            if (removed[u]) continue;
+            int[] arcs = outArcs[u];
+            int end = outDegrees[u] << 1;
+            int j = 0;
+            for (int i = 0; i < end; i += 2) {
+                if (!removed[arcs[i]]) {
+                    arcs[j] = arcs[i];
+                    arcs[j + 1] = arcs[i + 1];
+                    j += 2;
+                }
+            }
+            outDegrees[u] = j >> 1;
+        }
+        numTombstones = 0;
+    }
+
+    public void clear() {
+        Arrays.fill(outArcs, 0, numVertices, null);
+        Arrays.fill(outDegrees, 0, numVertices, 0);
+        Arrays.fill(removed, 0, numVertices, false);
+        numVertices = 0;
+        numRemovedVertices = 0;
+        numTombstones = 0;
+    }
+}
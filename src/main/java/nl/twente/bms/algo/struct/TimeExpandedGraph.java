@@ -2,6 +2,9 @@ package nl.twente.bms.algo.struct;
 
 import com.carrotsearch.hppc.*;
 import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.cursors.IntObjectCursor;
+import grph.Grph;
+import grph.in_memory.InMemoryGrph;
 import grph.path.ArrayPath;
 import grph.path.Path;
 import grph.properties.NumericalProperty;
@@ -15,44 +18,63 @@ import org.slf4j.LoggerFactory;
 import toools.set.IntHashSet;
 import toools.set.IntSet;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 
 /**
  * The class to store the time expanded graph with respect ot the station graph
  *
+ * It is not a grph graph: the vertices and arcs are kept in a {@link TimeExpandedAdjacency},
+ * use {@link #toGrph()} to get a grph copy, e.g. to display it.
+ *
  * @author Feng Zhao (feng.zhao@feedzai.com)
  * @since 1.0
  */
 
-public class TimeExpandedGraph extends StationGraph {
+public class TimeExpandedGraph {
     private static final Logger logger = LoggerFactory.getLogger(TimeExpandedGraph.class);
-    private final NumericalProperty nodeTimeProperty;
-    private final NumericalProperty nodeStationIdProperty;
-    private final NumericalProperty nodeOfferIdProperty;
-    private final StringProperty nodeLabelProperty;
+    private static final int TIME = 0;
+    private static final int STATION_ID = 1;
+    private static final int OFFER_ID = 2;
+    private static final int SEGMENT = 3;
+    private static final int NUM_ATTRIBUTES = 4;
+    // the candidate stations of an offer subgraph are within the detour the driver covers in this many minutes
+    // over the max detour, the durations of a route up to a stop round down by less than a minute a leg
+    private static final int CANDIDATE_SLACK_DURATION = 2;
+
+    // vertex --> [time, station id, offer id, segment] at NUM_ATTRIBUTES * vertex,
+    // the segment of a vertex of generation g of its offer is 2 g, it is 2 g + 1 once the vertex is committed
+    // in generation g: the committed vertices are never dead, and a parcel changes offer where the segment changes,
+    // as it did when the committed route was an offer of its own. The search reads all the attributes
+    // of a vertex from one place
+    private int[] vertexAttributes;
+
+    private final TimeExpandedAdjacency adjacency;
+    // the paths assigned to the parcels, colored in the exported graph
+    private final List<Path> assignedPaths;
 
     private final StationGraph stationGraph;
     private final DriverConfig driverConfig;
+    private final DijkstraTimeExpandedAlgorithm searchAlgorithm;
     // stationId --> timeTable
     private IntObjectMap<TimeTable> stationTimeTableMap;
 
-    private IntSet markRemovedOfferIds;
-
     private IntIntMap assignmentMap;
 
     public TimeExpandedGraph(StationGraph stationGraph, DriverConfig driverConfig) {
-        nodeTimeProperty = new NumericalProperty("time", 11, 1441);
-        nodeStationIdProperty = new NumericalProperty("station", 16, 65535);
-        nodeOfferIdProperty = new NumericalProperty("offer", 16, 65535);
-        nodeLabelProperty = new StringProperty("label");
+        vertexAttributes = new int[16 * NUM_ATTRIBUTES];
 
-        markRemovedOfferIds = new IntHashSet();
+        adjacency = new TimeExpandedAdjacency();
+        assignedPaths = new ArrayList<>();
         stationTimeTableMap = new IntObjectOpenHashMap<>(stationGraph.getNumberOfVertices());
 
         assignmentMap = new IntIntOpenHashMap();
 
         this.stationGraph = stationGraph;
         this.driverConfig = driverConfig;
-
+        this.searchAlgorithm = new DijkstraTimeExpandedAlgorithm(this, true);
     }
 
     /**
@@ -61,66 +83,248 @@ public class TimeExpandedGraph extends StationGraph {
      * @param offer driver's offer
      */
     public void addOffer(Offer offer) {
-        IntArrayList candidates = new IntArrayList();
+        addOffer(offer, buildOfferSubgraph(offer));
+    }
 
-        for (IntCursor cursor : stationGraph.getVertices()) {
-            int v = cursor.value;
-            if (v == offer.getSource() || v == offer.getTarget()) continue;
-            if (stationGraph.isFeasible(offer, v)) candidates.add(v);
+    /**
+     * Add the time vertices and arcs of the offer subgraph to the time expanded graph
+     *
+     * @param offer    driver's offer
+     * @param subgraph the subgraph built for the offer, or for an offer with the same route and departure time
+     */
+    public void addOffer(Offer offer, OfferSubgraph subgraph) {
+        assert subgraph.getDepartureTime() == offer.getDepartureTime() : "subgraph of another departure time";
+
+        int[] vertexIds = new int[subgraph.getNumberOfVertices()];
+        int numVertices = 0;
+        int[] operations = subgraph.getOperations();
+        for (int i = 0, end = subgraph.getOperationsLength(); i < end; ) {
+            if (operations[i] == OfferSubgraph.ADD_VERTEX) {
+                vertexIds[numVertices++] = this.addTimeVertex(operations[i + 1], operations[i + 2], offer);
+                i += 3;
+            } else {
+                adjacency.addArc(vertexIds[operations[i + 1]], vertexIds[operations[i + 2]], operations[i + 3]);
+                i += 4;
+            }
         }
 
-        int sourceTimeVertex = this.addTimeVertex(offer.getDepartureTime(), offer.getSource(), offer);
-        int targetTime = offer.getDepartureTime() +
-                stationGraph.getDuration(offer, offer.getSource(), offer.getTarget());
-        int targetTimeVertex = this.addTimeVertex(targetTime, offer.getTarget(), offer);
+        // the offer source and target time vertices are the first two of the subgraph
+        offer.setSourceTimeVertex(vertexIds[0]);
+        offer.setTargetTimeVertex(vertexIds[1]);
+        offer.setEarliestArrivalTime(subgraph.getTargetTime());
+        offer.setCandidateStations(subgraph.getCandidateStations(), subgraph.getCandidateDetour());
+    }
 
-        //add sourceTimeVertex and targetTimeVertex to offer
-        offer.setSourceTimeVertex(sourceTimeVertex);
-        offer.setTargetTimeVertex(targetTimeVertex);
-        offer.setEarliestArrivalTime(targetTime);
+    /**
+     * Add the offers to the empty graph, the graph is the same as adding the offers one by one.
+     *
+     * The time vertices of all the offers are created first. Then the time table of every station is filled
+     * and linked in one sweep, instead of linking every new vertex and unlinking its neighbors.
+     * The arcs are added last, replaying the subgraphs again: a waiting arc is added when its later
+     * time vertex is created, so the out arcs of every vertex keep the order of adding the offers one by one.
+     * The offers are added one by one if the graph is not empty or if their hold durations differ.
+     *
+     * @param offers    the offers
+     * @param subgraphs the subgraph of each offer
+     */
+    public void addOffers(Offer[] offers, OfferSubgraph[] subgraphs) {
+        boolean isBulk = adjacency.getNumberOfVertices() == 0;
+        for (int i = 1; i < offers.length && isBulk; i++) {
+            isBulk = offers[i].getHoldDuration() == offers[0].getHoldDuration();
+        }
+        if (!isBulk) {
+            for (int i = 0; i < offers.length; i++) {
+                addOffer(offers[i], subgraphs[i]);
+            }
+            return;
+        }
 
-        // assign the special case that directly travel from driver.sourceTimeVertex to driver.targetTimeVertex
-        int driverEdge = this.addDirectedSimpleEdge(sourceTimeVertex, targetTimeVertex);
-        setEdgeWeight(driverEdge, targetTime - offer.getDepartureTime());
+        // offer index --> local vertex --> time vertex,
+        // the vertices of a subgraph are distinct and the ones of different offers are never shared
+        int[][] offerVertexIds = new int[offers.length][];
+        // station --> the time vertices of the station in the order they are created
+        IntObjectMap<IntArrayList> stationVerticesMap = new IntObjectOpenHashMap<>(stationGraph.getNumberOfVertices());
+        for (int k = 0; k < offers.length; k++) {
+            OfferSubgraph subgraph = subgraphs[k];
+            assert subgraph.getDepartureTime() == offers[k].getDepartureTime() : "subgraph of another departure time";
+
+            int[] vertexIds = new int[subgraph.getNumberOfVertices()];
+            int numVertices = 0;
+            int[] operations = subgraph.getOperations();
+            for (int i = 0, end = subgraph.getOperationsLength(); i < end; ) {
+                if (operations[i] == OfferSubgraph.ADD_VERTEX) {
+                    int stationId = operations[i + 2];
+                    int vertexId = createTimeVertex(operations[i + 1], stationId, offers[k].getId());
+                    IntArrayList stationVertices = stationVerticesMap.get(stationId);
+                    if (stationVertices == null) {
+                        stationVertices = new IntArrayList();
+                        stationVerticesMap.put(stationId, stationVertices);
+                    }
+                    stationVertices.add(vertexId);
+                    vertexIds[numVertices++] = vertexId;
+                    i += 3;
+                } else {
+                    i += 4;
+                }
+            }
+            offerVertexIds[k] = vertexIds;
+        }
 
-        for (IntCursor source_candidate_cursor : candidates) {
-            for (IntCursor target_candidate_cursor : candidates) {
-                int s = source_candidate_cursor.value;
-                int t = target_candidate_cursor.value;
+        // time vertex --> the next time vertex at its station within the hold duration
+        int[] nextVertexIds = new int[adjacency.getNumberOfVertices()];
+        Arrays.fill(nextVertexIds, -1);
+        int holdDuration = offers.length == 0 ? 0 : offers[0].getHoldDuration();
+        for (IntObjectCursor<IntArrayList> cursor : stationVerticesMap) {
+            int[] vertexIds = cursor.value.toArray();
+            int[] vertexTimes = new int[vertexIds.length];
+            int[] offerIds = new int[vertexIds.length];
+            for (int i = 0; i < vertexIds.length; i++) {
+                vertexTimes[i] = getTimeFromVertexId(vertexIds[i]);
+                offerIds[i] = getOfferIdFromVertexId(vertexIds[i]);
+            }
+            getOrCreateTimeTable(cursor.key).addTimeVertices(vertexIds, vertexTimes, offerIds, holdDuration,
+                    nextVertexIds);
+        }
+        // time vertex --> the previous time vertex at its station within the hold duration
+        int[] prevVertexIds = new int[nextVertexIds.length];
+        Arrays.fill(prevVertexIds, -1);
+        for (int u = 0; u < nextVertexIds.length; u++) {
+            if (nextVertexIds[u] != -1) prevVertexIds[nextVertexIds[u]] = u;
+        }
 
-                if (s == t || stationGraph.isFeasible(offer, s, t)) {
+        for (int k = 0; k < offers.length; k++) {
+            OfferSubgraph subgraph = subgraphs[k];
+            int[] vertexIds = offerVertexIds[k];
+            int numVertices = 0;
+            int[] operations = subgraph.getOperations();
+            for (int i = 0, end = subgraph.getOperationsLength(); i < end; ) {
+                if (operations[i] == OfferSubgraph.ADD_VERTEX) {
+                    // the vertex ids follow the creation order, the waiting arcs to and from the vertices
+                    // created before are added now
+                    int v = vertexIds[numVertices++];
+                    int u = prevVertexIds[v];
+                    if (u != -1 && u < v) adjacency.addArc(u, v, getTimeFromVertexId(v) - getTimeFromVertexId(u));
+                    int w = nextVertexIds[v];
+                    if (w != -1 && w < v) adjacency.addArc(v, w, getTimeFromVertexId(w) - getTimeFromVertexId(v));
+                    i += 3;
+                } else {
+                    adjacency.addArc(vertexIds[operations[i + 1]], vertexIds[operations[i + 2]], operations[i + 3]);
+                    i += 4;
+                }
+            }
 
-                    int sTime = offer.getDepartureTime() + stationGraph.getDuration(offer, offer.getSource(), s);
-                    int sTimeVertex = this.addTimeVertex(sTime, s, offer);
+            offers[k].setSourceTimeVertex(vertexIds[0]);
+            offers[k].setTargetTimeVertex(vertexIds[1]);
+            offers[k].setEarliestArrivalTime(subgraph.getTargetTime());
+            offers[k].setCandidateStations(subgraph.getCandidateStations(), subgraph.getCandidateDetour());
+        }
+    }
 
-                    if (this.getEdgesConnecting(sourceTimeVertex, sTimeVertex).isEmpty()) {
-                        int edgeDriverSourceSource = this.addDirectedSimpleEdge(sourceTimeVertex, sTimeVertex);
-                        setEdgeWeight(edgeDriverSourceSource, sTime - offer.getDepartureTime());
-                    }
+    /**
+     * Compute the time vertices and arcs of driver offer's feasible paths, without changing the graph.
+     *
+     * The stations within the max detour are looked for among the candidate stations of the offer
+     * if they are within a detour at least as long, among all the stations otherwise. The candidate detour
+     * of the subgraph has some slack over the max detour, so that the candidate stations still hold
+     * the stations of the continuations after the distances are rounded to durations and back.
+     *
+     * @param offer driver's offer
+     * @return the offer subgraph
+     */
+    public OfferSubgraph buildOfferSubgraph(Offer offer) {
+        OfferSubgraph subgraph = new OfferSubgraph(offer.getDepartureTime());
+        int source = offer.getSource();
+        int target = offer.getTarget();
+        int maxDetour = offer.getMaxDetour();
+        int maxTravelDuration = offer.getMaxDuration() - offer.getHoldDuration();
+
+        int[] stations = offer.getCandidateStations();
+        int candidateDetour = maxDetour + offer.getDistance(CANDIDATE_SLACK_DURATION);
+        if (stations != null && maxDetour <= offer.getCandidateDetour()) {
+            candidateDetour = Math.min(candidateDetour, offer.getCandidateDetour());
+        } else {
+            stations = stationGraph.getVertices().toIntArray();
+        }
 
-                    int tTime = sTime + stationGraph.getDuration(offer, s, t);
-                    int tTimeVertex = this.addTimeVertex(tTime, t, offer);
+        // station --> shortest distance and travel duration from the offer source and to the offer target
+        int numStations = stationGraph.getVertices().getGreatest() + 1;
+        int[] fromSource = new int[numStations];
+        int[] toTarget = new int[numStations];
+        int[] fromSourceDuration = new int[numStations];
+        int[] toTargetDuration = new int[numStations];
 
-                    if (s != t && this.getEdgesConnecting(sTimeVertex, tTimeVertex).isEmpty()) {
-                        int e = this.addDirectedSimpleEdge(sTimeVertex, tTimeVertex);
-                        setEdgeWeight(e, tTime - sTime);
-                    }
+        IntArrayList candidateStations = new IntArrayList();
+        IntArrayList candidates = new IntArrayList();
+        for (int v : stations) {
+            if (v == target) continue;
+            fromSource[v] = stationGraph.getShortestDistance(source, v);
+            toTarget[v] = stationGraph.getShortestDistance(v, target);
+            if (fromSource[v] == Integer.MAX_VALUE || toTarget[v] == Integer.MAX_VALUE) continue;
+            if (fromSource[v] + toTarget[v] > candidateDetour) continue;
+            candidateStations.add(v);
+            if (v == source || fromSource[v] + toTarget[v] > maxDetour) continue;
+            fromSourceDuration[v] = offer.getDuration(fromSource[v]);
+            toTargetDuration[v] = offer.getDuration(toTarget[v]);
+            if (fromSourceDuration[v] + toTargetDuration[v] > maxTravelDuration) continue;
+            candidates.add(v);
+        }
+        int[] candidateArray = candidates.toArray();
+        // on undirected distances d(s, t) >= toTarget[t] - toTarget[s], which bounds the detour over s and t
+        // without looking up d(s, t)
+        boolean triangleCut = stationGraph.hasSymmetricShortestDistances();
 
-                    int driverTargetTime = tTime + stationGraph.getDuration(offer, t, offer.getTarget());
-                    if (driverTargetTime != targetTime) {
-                        int driverTargetTimeVertex = this.addTimeVertex(driverTargetTime, offer.getTarget(), offer);
-                        if (this.getEdgesConnecting(tTimeVertex, driverTargetTimeVertex).isEmpty()) {
-                            int edgeTargetDriverTarget = this.addDirectedSimpleEdge(tTimeVertex, driverTargetTimeVertex);
-                            setEdgeWeight(edgeTargetDriverTarget, driverTargetTime - tTime);
-                        }
-                    } else if (this.getEdgesConnecting(tTimeVertex, targetTimeVertex).isEmpty()) {
-                        int edgeTargetDriverTarget = this.addDirectedSimpleEdge(tTimeVertex, targetTimeVertex);
-                        setEdgeWeight(edgeTargetDriverTarget, targetTime - tTime);
-                    }
+        int sourceTimeVertex = subgraph.addVertex(offer.getDepartureTime(), offer.getSource());
+        int targetTime = offer.getDepartureTime() +
+                stationGraph.getDuration(offer, offer.getSource(), offer.getTarget());
+        int targetTimeVertex = subgraph.addVertex(targetTime, offer.getTarget());
+        subgraph.setTargetTime(targetTime);
+
+        // assign the special case that directly travel from driver.sourceTimeVertex to driver.targetTimeVertex
+        subgraph.addArcIfAbsent(sourceTimeVertex, targetTimeVertex, targetTime - offer.getDepartureTime());
+
+        for (int s : candidateArray) {
+            int sTime = offer.getDepartureTime() + fromSourceDuration[s];
+            int sTimeVertex = -1;
+            int tBound = maxDetour - fromSource[s] + toTarget[s];
+
+            for (int t : candidateArray) {
+                if (triangleCut && 2 * toTarget[t] > tBound) continue;
+
+                int tTime;
+                if (s == t) {
+                    tTime = sTime;
+                } else {
+                    int distanceST = stationGraph.getShortestDistance(s, t);
+                    if (distanceST == Integer.MAX_VALUE
+                            || fromSource[s] + distanceST + toTarget[t] > maxDetour) continue;
+                    int durationST = offer.getDuration(distanceST);
+                    if (fromSourceDuration[s] + durationST + toTargetDuration[t] > maxTravelDuration) continue;
+                    tTime = sTime + durationST;
+                }
+
+                if (sTimeVertex == -1) {
+                    sTimeVertex = subgraph.addVertex(sTime, s);
+                    subgraph.addArcIfAbsent(sourceTimeVertex, sTimeVertex, sTime - offer.getDepartureTime());
+                }
+
+                int tTimeVertex = subgraph.addVertex(tTime, t);
+
+                if (s != t) {
+                    subgraph.addArcIfAbsent(sTimeVertex, tTimeVertex, tTime - sTime);
+                }
+
+                int driverTargetTime = tTime + toTargetDuration[t];
+                if (driverTargetTime != targetTime) {
+                    int driverTargetTimeVertex = subgraph.addVertex(driverTargetTime, target);
+                    subgraph.addArcIfAbsent(tTimeVertex, driverTargetTimeVertex, driverTargetTime - tTime);
+                } else {
+                    subgraph.addArcIfAbsent(tTimeVertex, targetTimeVertex, targetTime - tTime);
                 }
             }
         }
-        this.setVerticesLabel(nodeLabelProperty);
+        subgraph.setCandidateStations(candidateStations.toArray(), candidateDetour);
+        subgraph.trimToSize();
+        return subgraph;
     }
 
     /**
@@ -132,47 +336,87 @@ public class TimeExpandedGraph extends StationGraph {
      * @return the time vertex id
      */
     private int addTimeVertex(int time, int stationId, Offer offer) {
+        int vertexId = getTimeVertex(time, stationId, offer.getId());
+        if(vertexId != -1) {
+            if (!isMarkedRemoved(vertexId)) return vertexId;
+            // a dead vertex of an earlier generation of the offer, the new one takes its place
+            removeVertex(vertexId);
+        }
         TimeTable timeTable = getOrCreateTimeTable(stationId);
-        int vertexId = timeTable.getTimeVertex(time, offer.getId(), nodeOfferIdProperty);
-        if(vertexId != -1) return vertexId;
-        vertexId = this.addVertex();
-        nodeTimeProperty.setValue(vertexId, time);
-        nodeStationIdProperty.setValue(vertexId, stationId);
-        nodeOfferIdProperty.setValue(vertexId, offer.getId());
-        nodeLabelProperty.setValue(vertexId, getVertexString(vertexId));
-
-        timeTable.addTimeVertex(this, vertexId, nodeTimeProperty, offer);
+        vertexId = createTimeVertex(time, stationId, offer.getId());
+        timeTable.addTimeVertex(adjacency, vertexId, time, offer);
         return vertexId;
     }
 
-    private int getTimeVertex(int time, int stationId, int offerId){
-        TimeTable timeTable = getOrCreateTimeTable(stationId);
-        int vertexId = timeTable.getTimeVertex(time, offerId, nodeOfferIdProperty);
+    /**
+     * Create a time vertex with its attributes, in the current generation of its offer,
+     * without adding it to the time table of its station
+     */
+    private int createTimeVertex(int time, int stationId, int offerId) {
+        int vertexId = adjacency.addVertex();
+        int base = vertexId * NUM_ATTRIBUTES;
+        if (base + NUM_ATTRIBUTES > vertexAttributes.length) {
+            vertexAttributes = Arrays.copyOf(vertexAttributes,
+                    Math.max(base + NUM_ATTRIBUTES, vertexAttributes.length + (vertexAttributes.length >> 1)));
+        }
+        vertexAttributes[base + TIME] = time;
+        vertexAttributes[base + STATION_ID] = stationId;
+        vertexAttributes[base + OFFER_ID] = offerId;
+        vertexAttributes[base + SEGMENT] = 2 * driverConfig.getOfferGeneration(offerId);
         return vertexId;
     }
 
+    private int getTimeVertex(int time, int stationId, int offerId){
+        TimeTable timeTable = stationTimeTableMap.get(stationId);
+        if (timeTable == null) return -1;
+        return timeTable.getTimeVertex(time, offerId);
+    }
+
     public void assignParcel(Parcel parcel) {
+        // no search is running, the arcs to the removed vertices can be dropped
+        if (adjacency.needsCompaction()) adjacency.compact();
 
         TimeTable startTimeTable = stationTimeTableMap.get(parcel.getStartStationId());
         if (startTimeTable == null) return;
 
-        //find the first not marking removed start vertex
-        int startVertexId = getNextVertexId(startTimeTable, parcel.getEarliestDepartureTime(), -1, parcel.getVolume());
-
-        Path path = null;
-        while (startVertexId != -1 && path == null) {
-            path = getShortestPath(startVertexId, parcel.getEndStationId(), parcel.getVolume());
-            if (path != null && path.getLength() != 0) {
-                path = getCompactPath(path);
-                logger.info("Assign " + parcel + " to path " + getPathString(path));
-                parcel.setPath(path);
-                parcel.setDriverIdSet(getDriverIdSet(path));
-                path.setColor(this, 6);
-                int numOffers = updateOffers(path, parcel);
-                parcel.setNumOffers(numOffers);
-            } else {
-                startVertexId = getNextVertexId(startTimeTable, nodeTimeProperty.getValueAsInt(startVertexId), startVertexId, parcel.getVolume());
+        // seed one search with every start vertex that is not marked removed, has enough capacity
+        // and can still arrive in time, each with its waiting time after the parcel earliest departure
+        IntArrayList startVertices = new IntArrayList();
+        IntArrayList waitingTimes = new IntArrayList();
+        // the dead vertices met on the way, they are removed once the search is over
+        IntArrayList deadVertices = new IntArrayList();
+        TimeTable.DepartureCursor departures = startTimeTable.getDepartures(parcel.getEarliestDepartureTime());
+        int startVertexId = getNextVertexId(departures, parcel.getVolume(), deadVertices);
+        while (startVertexId != -1) {
+            int startTime = getTimeFromVertexId(startVertexId);
+            // the start vertices come in time order, no later one can arrive in time either
+            if ((long) startTime + getTravelTimeLowerBound(startVertexId, parcel.getEndStationId())
+                    > parcel.getLatestArrivalTime()) break;
+
+            startVertices.add(startVertexId);
+            waitingTimes.add(startTime - parcel.getEarliestDepartureTime());
+            startVertexId = getNextVertexId(departures, parcel.getVolume(), deadVertices);
+        }
+        if (startVertices.isEmpty()) {
+            removeDeadVertices(deadVertices);
+            return;
+        }
+
+        Path path = searchAlgorithm.compute(startVertices.toArray(), waitingTimes.toArray(), parcel.getEndStationId(),
+                parcel.getVolume(), parcel.getLatestArrivalTime(), deadVertices, Grph.DIRECTION.out, null);
+        removeDeadVertices(deadVertices);
+        if (path != null && path.getLength() != 0) {
+            path = getCompactPath(path);
+            if (isOfferBoardedAgain(path)) {
+                logger.warn("Skip " + parcel + ", its path gets on an offer twice: " + getPathString(path));
+                return;
             }
+            if (logger.isInfoEnabled()) logger.info("Assign " + parcel + " to path " + getPathString(path));
+            parcel.setPath(path);
+            parcel.setDriverIdSet(getDriverIdSet(path));
+            assignedPaths.add(path);
+            int numOffers = updateOffers(path, parcel);
+            parcel.setNumOffers(numOffers);
         }
     }
 
@@ -181,7 +425,7 @@ public class TimeExpandedGraph extends StationGraph {
 
         for (int i = 0; i < path.getNumberOfVertices(); i++) {
             int currentVertexId = path.getVertexAt(i);
-            driverIdSet.add(driverConfig.getDriverIdByOfferId(nodeOfferIdProperty.getValueAsInt(currentVertexId)));
+            driverIdSet.add(driverConfig.getDriverIdByOfferId(getOfferIdFromVertexId(currentVertexId)));
         }
         return driverIdSet;
     }
@@ -216,206 +460,251 @@ public class TimeExpandedGraph extends StationGraph {
     }
 
     private boolean isExternalVertex(int currentVertexId, int vertexIdToCompare) {
-        return nodeStationIdProperty.getValueAsInt(currentVertexId) !=
-                nodeStationIdProperty.getValueAsInt(vertexIdToCompare);
+        return getStationIdFromVertexId(currentVertexId) !=
+                getStationIdFromVertexId(vertexIdToCompare);
     }
 
-    private int getNextVertexId(TimeTable timetable, int startTime, int prevTimeVertex, int volume) {
-        int startVertexId;
-        if(prevTimeVertex == -1){
-            startVertexId = timetable.findFirstTimeVertex(startTime);
-        }
-        else{
-            startVertexId = timetable.findNextTimeVertex(startTime, prevTimeVertex);
-        }
-
+    /**
+     * Move the cursor to the next start vertex with enough capacity,
+     * the dead vertices passed on the way are added to the given list
+     */
+    private int getNextVertexId(TimeTable.DepartureCursor departures, int volume, IntArrayList deadVertices) {
+        int startVertexId = departures.next();
         while (startVertexId != -1) {
             if(isMarkedRemoved(startVertexId)){
-                this.removeVertex(startVertexId);
-                startVertexId = timetable.findFirstTimeVertex(startTime);
+                deadVertices.add(startVertexId);
             }
-            else if(!hasCapacity(startVertexId, volume)){
-                startVertexId = timetable.findNextTimeVertex(nodeTimeProperty.getValueAsInt(startVertexId), startVertexId);
-            }
-            else{
+            else if(hasCapacity(startVertexId, volume)){
                 break;
             }
+            startVertexId = departures.next();
         }
 
         return startVertexId;
     }
 
     public Path getShortestPath(int source, int destinationStationId, int volume) {
-        return new DijkstraTimeExpandedAlgorithm(this)
-                .compute(source, destinationStationId, volume, DIRECTION.out, null);
+        return getShortestPath(source, destinationStationId, volume, Integer.MAX_VALUE);
+    }
+
+    public Path getShortestPath(int source, int destinationStationId, int volume, int latestArrivalTime) {
+        IntArrayList deadVertices = new IntArrayList();
+        Path path = searchAlgorithm.compute(new int[]{source}, new int[]{0}, destinationStationId, volume,
+                latestArrivalTime, deadVertices, Grph.DIRECTION.out, null);
+        removeDeadVertices(deadVertices);
+        return path;
     }
 
     /**
-     * Update offers on the assigned Path by marking them as removed,
-     * and the drivers of the updated offers add some new offers
+     * Update the offers on the assigned path, the drivers of the hops carry the parcel.
+     * A hop ends where the path changes offer, or where it leaves the committed route of the driver
+     * for the rest of the offer.
      *
      * @param path   the assigned path
      * @param parcel
+     * @return the number of offers the parcel travels with
      */
     private int updateOffers(Path path, Parcel parcel) {
-        // update capacities for the offers in the assigned path
         int numOffers = 0;
-        int prevVertexId = -1;
-        int prevStartVertexId = -1;
-        int prevOfferId = -1;
+        int prevStartIndex = -1;
+        int prevSegment = -1;
         for (int i = 0; i < path.getNumberOfVertices(); i++) {
             int currentVertexId = path.getVertexAt(i);
-            int currentOfferId = nodeOfferIdProperty.getValueAsInt(currentVertexId);
-            //a new offer hop
-            if (currentOfferId != prevOfferId) {
-                if(prevStartVertexId != -1 && prevVertexId != -1 && prevOfferId != -1){
+            if (i == 0 || getOfferIdFromVertexId(currentVertexId) != getOfferIdFromVertexId(path.getVertexAt(i - 1))) {
+                //a new offer hop
+                if (prevStartIndex != -1) {
                     numOffers++;
-                    // prev offer is from prevStartVertexId to prevVertexId
-                    updatePrevOffer(prevOfferId, prevStartVertexId, prevVertexId, parcel);
-                    addNewOffer(prevOfferId, prevVertexId);
+                    updatePrevOffer(path.getVertexAt(prevStartIndex), path.getVertexAt(i - 1), parcel);
                 }
-                prevStartVertexId = currentVertexId;
+                prevStartIndex = i;
+                prevSegment = -1;
+            } else {
+                // the segment of the arc to the current vertex, the hop changes segment at the previous vertex
+                int segment = getSegment(currentVertexId);
+                if (prevSegment != -1 && segment != prevSegment) {
+                    numOffers++;
+                    updatePrevOffer(path.getVertexAt(prevStartIndex), path.getVertexAt(i - 1), parcel);
+                    prevStartIndex = i - 1;
+                }
+                prevSegment = segment;
             }
-            prevVertexId = currentVertexId;
-            prevOfferId = currentOfferId;
         }
         // the last offer
-        if(prevStartVertexId != -1 && prevVertexId != -1 && prevOfferId != -1){
+        if (prevStartIndex != -1) {
             numOffers++;
-            updatePrevOffer(prevOfferId, prevStartVertexId, prevVertexId, parcel);
-            addNewOffer(prevOfferId, prevVertexId);
+            updatePrevOffer(path.getVertexAt(prevStartIndex), path.getVertexAt(path.getNumberOfVertices() - 1), parcel);
         }
 
         return numOffers;
     }
 
-    private void setTimeVerticesToUpdatedOffer(Offer updatedOffer, int prevOfferId, int prevStartVertexId) {
-        int s = updatedOffer.getSource();
-        int sTime =  updatedOffer.getDepartureTime();
-        int sTimeVertexId = updatedOffer.getSourceTimeVertex();
-        int sPrime = nodeStationIdProperty.getValueAsInt(prevStartVertexId);
-        int sPrimeTime = nodeTimeProperty.getValueAsInt(prevStartVertexId);
-        int t = updatedOffer.getTarget();
-
-        if(s == sPrime){
-            updatePathToOffer(s, sTimeVertexId, sTime, t, updatedOffer, prevOfferId);
-        }
-        else {
-            updatePathToOffer(s, sTimeVertexId, sTime, sPrime, updatedOffer, prevOfferId);
-            updatePathToOffer(sPrime, prevStartVertexId, sPrimeTime, t, updatedOffer, prevOfferId);
+    /**
+     * Whether the path gets on an offer again after leaving it. Updating the first hop would continue the offer
+     * and kill the time vertices of the later hop, so such a path is not assigned.
+     */
+    private boolean isOfferBoardedAgain(Path path) {
+        IntOpenHashSet offerIdSet = new IntOpenHashSet();
+        for (int i = 0; i < path.getNumberOfVertices(); i++) {
+            int offerId = getOfferIdFromVertexId(path.getVertexAt(i));
+            if (i != 0 && offerId == getOfferIdFromVertexId(path.getVertexAt(i - 1))) continue;
+            if (!offerIdSet.add(offerId)) return true;
         }
+        return false;
     }
 
-    private void updatePathToOffer(int s, int timeVertexId, int time, int t, Offer offer, int prevOfferId){
-        Path pathToUpdate = stationGraph.getShortestPath(s, t);
-        updateVertexOfferId(timeVertexId, offer.getId());
+    /**
+     * Update the offer of a hop of the assigned path. The driver carries the parcel over the hop,
+     * which is recorded on the driver's load timeline. If the hop ends past the committed route of the driver,
+     * the route is committed up to the end of the hop, the end is recorded as a stop of the driver
+     * and the offer continues from it: the next generation of the offer starts from the stop,
+     * the time vertices of the offer not on the committed route are dead.
+     */
+    private void updatePrevOffer(int prevStartVertexId, int prevVertexId, Parcel parcel) {
+        int prevOfferId = getOfferIdFromVertexId(prevVertexId);
+        assert !isMarkedRemoved(prevStartVertexId) && !isMarkedRemoved(prevVertexId) : "dead hop of the path";
+        Offer prevOffer = driverConfig.getOfferById(prevOfferId);
+        prevOffer.addParcel(parcel);
+        int startStationId = getStationIdFromVertexId(prevStartVertexId);
+        int startTime = getTimeFromVertexId(prevStartVertexId);
+        int stationId = getStationIdFromVertexId(prevVertexId);
+        int time = getTimeFromVertexId(prevVertexId);
+        driverConfig.addOfferLoad(prevOfferId, startTime, time, parcel.getVolume());
+        if (isCommitted(prevVertexId)) {
+            logger.info("Update committed route of offer: " + prevOffer);
+            return;
+        }
 
-        logger.debug("Path to update: " + pathToUpdate);
-        logger.debug("Set v" + timeVertexId + " to o" + offer.getId() + "@" + time);
+        int source = prevOffer.getSource();
+        int sourceTime = prevOffer.getDepartureTime();
+        if (isCommitted(prevStartVertexId) || source == startStationId) {
+            commitRoute(prevOffer, source, sourceTime, stationId);
+        } else {
+            commitRoute(prevOffer, source, sourceTime, startStationId);
+            commitRoute(prevOffer, startStationId, startTime, stationId);
+        }
+        // the committed route was an offer with the capacity left after the parcel, the cost of the driver
+        // did not count its end if the parcel filled the driver
+        if (parcel.getVolume() < prevOffer.getCapacity()) {
+            prevOffer.getDriver().addStop(stationId, time);
+        }
 
-        for (int i = 1; i < pathToUpdate.getNumberOfVertices(); i++) {
-            int preV = pathToUpdate.getVertexAt(i-1);
-            int v = pathToUpdate.getVertexAt(i);
-            time += offer.getDuration(stationGraph.getDirectDistance(preV, v));
-            int timeV = getTimeVertex(time, v, prevOfferId);
-            logger.debug("Set v" + timeV + " to o" + offer.getId()+ "@" + time);
-            if(timeV != -1){
-                updateVertexOfferId(timeV, offer.getId());
-            }
+        driverConfig.nextOfferGeneration(prevOfferId);
+        prevOffer.continueFrom(prevVertexId, stationId, time, stationGraph.getShortestDistance(source, stationId));
+        if (prevOffer.isFeasible()) {
+            addOffer(prevOffer);
+            logger.info("Continue offer: " + prevOffer);
+        } else {
+            logger.warn("Continued offer is not feasible: " + prevOffer);
         }
     }
 
-    private void updatePrevOffer(int prevOfferId, int prevStartVertexId, int prevVertexId, Parcel parcel) {
-        Offer prevOffer = driverConfig.getOfferById(prevOfferId);
-        prevOffer.addParcel(parcel);
-        if(!prevOffer.isUpdatedOffer()){
-            markOfferRemoved(prevOffer);
-            // create a updated offer on top of prev offer
-            int updatedOfferId = driverConfig.getNextOfferId();
-            Offer updatedOffer = new Offer(updatedOfferId, prevOffer, parcel.getVolume(),
-                    prevVertexId,
-                    nodeStationIdProperty.getValueAsInt(prevVertexId),
-                    nodeTimeProperty.getValueAsInt(prevVertexId));
-
-            if (updatedOffer.isFeasible()) {
-                logger.info("Add updated offer: " + updatedOffer);
-                driverConfig.addOffer(updatedOffer);
-                setTimeVerticesToUpdatedOffer(updatedOffer, prevOfferId, prevStartVertexId);
-            } else {
-                logger.warn("Updated offer is not feasible: " + updatedOffer);
-            }
-        }
-        else{
-            int remainingCapacity = prevOffer.getCapacity() - parcel.getVolume();
-            prevOffer.setCapacity(remainingCapacity);
-            if(remainingCapacity > 0){
-                logger.info("Update prev offer: " + prevOffer);
-            } else {
-                logger.warn("Updated prev offer is not feasible: " + prevOffer);
-                markOfferRemoved(prevOffer);
-            }
+    /**
+     * Commit the time vertices of the offer on the shortest path from the station s at the given time
+     * to the station t, the times on the path follow from the driver's speed
+     */
+    private void commitRoute(Offer offer, int s, int time, int t) {
+        Path pathToCommit = stationGraph.getShortestPath(s, t);
+        logger.debug("Path to commit: " + pathToCommit);
+        commitTimeVertex(getTimeVertex(time, s, offer.getId()));
+
+        for (int i = 1; i < pathToCommit.getNumberOfVertices(); i++) {
+            int preV = pathToCommit.getVertexAt(i-1);
+            int v = pathToCommit.getVertexAt(i);
+            time += offer.getDuration(stationGraph.getDirectDistance(preV, v));
+            commitTimeVertex(getTimeVertex(time, v, offer.getId()));
         }
     }
 
-    // add a new offer starting from the end point of the prev offer
-    private void addNewOffer(int prevOfferId, int startVertexId) {
-        Offer prevOffer = driverConfig.getOfferById(prevOfferId);
-        if (!prevOffer.isUpdatedOffer()) {
-            int nextOfferId = driverConfig.getNextOfferId();
-            Offer newOffer = new Offer(nextOfferId, prevOffer, startVertexId,
-                    nodeStationIdProperty.getValueAsInt(startVertexId),
-                    nodeTimeProperty.getValueAsInt(startVertexId));
-
-            if (newOffer.isFeasible()) {
-                driverConfig.addOffer(newOffer);
-                addOffer(newOffer);
-                logger.info("Add new offer: " + newOffer);
-            } else {
-                logger.warn("New offer is not feasible: " + newOffer);
-            }
-        }
-        else {
-            logger.warn("Updated offer is not extendable: " + prevOffer);
-        }
+    private void commitTimeVertex(int vertexId) {
+        if (vertexId == -1 || isMarkedRemoved(vertexId) || isCommitted(vertexId)) return;
+        if (logger.isDebugEnabled()) logger.debug("Commit vertex: " + getLabel(vertexId));
+        vertexAttributes[vertexId * NUM_ATTRIBUTES + SEGMENT]++;
+    }
+
+    private boolean isCommitted(int vertexId) {
+        return (getSegment(vertexId) & 1) == 1;
     }
 
-    private void markOfferRemoved(Offer offer) {
-        markRemovedOfferIds.add(offer.getId());
+    private int getSegment(int vertexId) {
+        return vertexAttributes[vertexId * NUM_ATTRIBUTES + SEGMENT];
     }
 
+    /**
+     * Whether the time vertex is dead: it is of an earlier generation of its offer and not on the committed route.
+     * The searches skip such vertices and report them, they are removed from the graph in a batch
+     * once the search is over.
+     */
     public boolean isMarkedRemoved(int vertexId) {
-        int offerId = nodeOfferIdProperty.getValueAsInt(vertexId);
-        if (markRemovedOfferIds.contains(offerId)) return true;
-        return false;
+        int base = vertexId * NUM_ATTRIBUTES;
+        int segment = vertexAttributes[base + SEGMENT];
+        return (segment & 1) == 0 && segment < 2 * driverConfig.getOfferGeneration(vertexAttributes[base + OFFER_ID]);
+    }
+
+    /**
+     * Remove the given dead time vertices from the graph, the ones already removed are skipped.
+     * It changes the graph, so it must not run while the graph is searched.
+     */
+    public void removeDeadVertices(IntArrayList deadVertices) {
+        for (IntCursor cursor : deadVertices) {
+            if (!adjacency.isRemoved(cursor.value)) removeVertex(cursor.value);
+        }
     }
 
+    /**
+     * Whether the driver of the time vertex has room for the volume at the time of the vertex
+     */
     public boolean hasCapacity(int vertexId, int volume) {
         if (volume <= 0) return true;
-        Offer offer = driverConfig.getOfferById(nodeOfferIdProperty.getValueAsInt(vertexId));
-        return offer.getCapacity() >= volume;
+        int time = getTimeFromVertexId(vertexId);
+        return driverConfig.getOfferFreeCapacity(getOfferIdFromVertexId(vertexId), time, time + 1) >= volume;
     }
-    public void updateVertexOfferId(int vertexId, int offerId) {
-        logger.debug("Update vertex: " + getLabel(vertexId));
-        int prevOfferId = nodeOfferIdProperty.getValueAsInt(vertexId);
-        nodeOfferIdProperty.setValue(vertexId, offerId);
 
-        TimeTable timeTable = stationTimeTableMap.get(nodeStationIdProperty.getValueAsInt(vertexId));
-        int time = nodeTimeProperty.getValueAsInt(vertexId);
-        timeTable.updateTimeVertexOfferId(vertexId, time, prevOfferId, offerId);
+    /**
+     * Whether the volume can be moved over the arc from u to v. On an arc between two time vertices
+     * of the same offer the parcel stays with the driver, so the driver must have room for it
+     * from the time of u to the time of v, excluded as the loads are, otherwise it only needs room at v.
+     */
+    public boolean hasCapacity(int u, int v, int volume) {
+        if (volume <= 0) return true;
+        int offerId = getOfferIdFromVertexId(v);
+        if (getOfferIdFromVertexId(u) != offerId) return hasCapacity(v, volume);
+        int time = getTimeFromVertexId(u);
+        return driverConfig.getOfferFreeCapacity(offerId, time, Math.max(getTimeFromVertexId(v), time + 1)) >= volume;
     }
 
 
     public void removeVertex(int vertexId) {
-        logger.debug("Remove vertex: " + getLabel(vertexId));
-        super.removeVertex(vertexId);
-        TimeTable timeTable = stationTimeTableMap.get(nodeStationIdProperty.getValueAsInt(vertexId));
-        int time = nodeTimeProperty.getValueAsInt(vertexId);
-        int offerId = nodeOfferIdProperty.getValueAsInt(vertexId);
+        if (logger.isDebugEnabled()) logger.debug("Remove vertex: " + getLabel(vertexId));
+        adjacency.removeVertex(vertexId);
+        TimeTable timeTable = getOrCreateTimeTable(getStationIdFromVertexId(vertexId));
+        int time = getTimeFromVertexId(vertexId);
+        int offerId = getOfferIdFromVertexId(vertexId);
         timeTable.removeTimeVertex(vertexId, time, offerId);
     }
 
+    public TimeExpandedAdjacency getAdjacency() {
+        return adjacency;
+    }
+
     public int getStationIdFromVertexId(int vertexId) {
-        return nodeStationIdProperty.getValueAsInt(vertexId);
+        return vertexAttributes[vertexId * NUM_ATTRIBUTES + STATION_ID];
+    }
+
+    public int getTimeFromVertexId(int vertexId) {
+        return vertexAttributes[vertexId * NUM_ATTRIBUTES + TIME];
+    }
+
+    public int getOfferIdFromVertexId(int vertexId) {
+        return vertexAttributes[vertexId * NUM_ATTRIBUTES + OFFER_ID];
+    }
+
+    /**
+     * Get the lower bound of the travel time from the station of the time vertex to the destination station
+     *
+     * @return the lower bound in minutes, Integer.MAX_VALUE if the destination station is not reachable
+     */
+    public int getTravelTimeLowerBound(int vertexId, int destinationStationId) {
+        return stationGraph.getTravelTimeLowerBound(getStationIdFromVertexId(vertexId), destinationStationId);
     }
 
 
@@ -450,20 +739,60 @@ public class TimeExpandedGraph extends StationGraph {
     }
 
     private String getVertexString(int timeVertexId){
-        int time = nodeTimeProperty.getValueAsInt(timeVertexId);
-        int stationId = nodeStationIdProperty.getValueAsInt(timeVertexId);
-        int offerId = nodeOfferIdProperty.getValueAsInt(timeVertexId);
+        int time = getTimeFromVertexId(timeVertexId);
+        int stationId = getStationIdFromVertexId(timeVertexId);
+        int offerId = getOfferIdFromVertexId(timeVertexId);
         return String.format("v%d_s%d_o%d@%d", timeVertexId, stationId, offerId, time);
     }
 
+    /**
+     * The labels are not stored, they are computed from the current vertex attributes when asked for,
+     * e.g. by the debug logs or the export to grph
+     */
+    public String getLabel(int vertexId) {
+        return getVertexString(vertexId);
+    }
+
+    /**
+     * Export the live part of the time expanded graph to grph, e.g. to display it.
+     * The vertices keep their ids and labels, the edges are labeled by their weights
+     * and the assigned paths are colored.
+     *
+     * @return a new grph graph, later changes of the time expanded graph are not reflected
+     */
+    public Grph toGrph() {
+        InMemoryGrph g = new InMemoryGrph();
+        StringProperty vertexLabelProperty = new StringProperty("label");
+        NumericalProperty edgeWeightProperty = new NumericalProperty("weight", 16, 65535);
+        for (int v = 0; v < adjacency.getNumberOfVertices(); v++) {
+            if (adjacency.isRemoved(v)) continue;
+            g.addVertex(v);
+            vertexLabelProperty.setValue(v, getLabel(v));
+        }
+        for (int u = 0; u < adjacency.getNumberOfVertices(); u++) {
+            for (int i = 0; i < adjacency.getOutDegree(u); i++) {
+                int v = adjacency.getOutNeighbor(u, i);
+                if (adjacency.isRemoved(v)) continue;
+                int e = g.addDirectedSimpleEdge(u, v);
+                edgeWeightProperty.setValue(e, adjacency.getOutWeight(u, i));
+            }
+        }
+        g.setVerticesLabel(vertexLabelProperty);
+        g.setEdgesLabel(edgeWeightProperty);
+        for (Path path : assignedPaths) {
+            path.setColor(g, 6);
+        }
+        return g;
+    }
+
+    public void display() {
+        toGrph().display();
+    }
+
     public void clear(){
-        super.clear();
-        nodeTimeProperty.unsetItAll();
-        nodeStationIdProperty.unsetItAll();
-        nodeOfferIdProperty.unsetItAll();
-        nodeLabelProperty.unsetItAll();
+        adjacency.clear();
+        assignedPaths.clear();
         stationTimeTableMap.clear();
-        markRemovedOfferIds.clear();
         assignmentMap.clear();
     }
 }
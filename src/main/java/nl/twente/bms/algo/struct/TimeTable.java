@@ -1,28 +1,45 @@
 package nl.twente.bms.algo.struct;
 
 import com.carrotsearch.hppc.IntArrayList;
-import com.carrotsearch.hppc.cursors.IntCursor;
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-import grph.properties.NumericalProperty;
+import com.carrotsearch.hppc.LongIntMap;
+import com.carrotsearch.hppc.LongIntOpenHashMap;
 import nl.twente.bms.model.elem.Offer;
 
-import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * The class to store the time table for one station
  *
+ * The time slots are bucketed by minute in a dense array, and a bitset marks the non empty slots,
+ * so the nearest past or future slot is found by a scan over the words of the bitset.
+ * A removed time vertex leaves a tombstone (-1) in its slot, so that the positions of the
+ * {@link DepartureCursor}s stay valid while they are scanning.
+ *
  * @author Feng Zhao (feng.zhao@feedzai.com)
  * @since 1.0
  */
 public class TimeTable {
-    // timeInMins to A list of time vertices map
-    private TreeMap<Integer, IntArrayList> timeSlots;
-    private Table<Integer, Integer, Integer> timeOfferIdToTimeVertexIdTable;
+    private static final int TOMBSTONE = -1;
+
+    // timeInMins --> A list of time vertices, null if the time slot was never used
+    private IntArrayList[] timeSlots;
+    // timeInMins --> number of time vertices in the slot that are not tombstones
+    private int[] liveCounts;
+    // the times with a non empty time slot
+    private BitSet occupiedTimes;
+    // (time, offerId) --> time vertex
+    private LongIntMap timeOfferIdToTimeVertexIdMap;
 
     public TimeTable() {
-        timeSlots = new TreeMap<>();
-        timeOfferIdToTimeVertexIdTable = HashBasedTable.create();
+        timeSlots = new IntArrayList[1441];
+        liveCounts = new int[1441];
+        occupiedTimes = new BitSet(1441);
+        timeOfferIdToTimeVertexIdMap = new LongIntOpenHashMap();
+    }
+
+    private static long timeOfferIdKey(int time, int offerId) {
+        return ((long) time << 32) | (offerId & 0xFFFFFFFFL);
     }
 
     /**
@@ -30,113 +47,208 @@ public class TimeTable {
      *
      * @param time             the time at this station
      * @param offerId           the current driver's offer Id
-     * @param offerIdProperty the vertex offerIdProperty in time expanded graph
      * @return the time vertex if exist, otherwise -1
      */
-    public int getTimeVertex(int time, int offerId, NumericalProperty offerIdProperty) {
-        Integer tVertexId = timeOfferIdToTimeVertexIdTable.get(time, offerId);
-        return tVertexId == null? -1 : tVertexId;
+    public int getTimeVertex(int time, int offerId) {
+        return timeOfferIdToTimeVertexIdMap.getOrDefault(timeOfferIdKey(time, offerId), -1);
     }
 
     /**
      * Add time vertexId to the time table of the station
      *
-     * @param graph        the time expanded graph
+     * @param adjacency    the adjacency of the time expanded graph
      * @param vertexId       the time vertexId id in the time expanded graph
-     * @param timeProperty the vertexId timeProperty
+     * @param vertexTime   the time of the vertexId
      * @param offer       the driver's associated with the vertexId
      */
-    public void addTimeVertex(TimeExpandedGraph graph, int vertexId, NumericalProperty timeProperty, Offer offer) {
-        int vertexTime = timeProperty.getValueAsInt(vertexId);
-        Integer nearestPastTimeKey = timeSlots.floorKey(vertexTime);
-        Integer nearestFutureTimeKey = timeSlots.ceilingKey(vertexTime + 1);
+    public void addTimeVertex(TimeExpandedAdjacency adjacency, int vertexId, int vertexTime, Offer offer) {
+        assert vertexTime >= 0 : "negative time: " + vertexTime;
+
+        int nearestPastTime = occupiedTimes.previousSetBit(vertexTime);
+        int nearestFutureTime = occupiedTimes.nextSetBit(vertexTime + 1);
 
         int nearestPastVertex = -1;
         int nearestPastDelay = offer.getHoldDuration() + 1;
-        if(nearestPastTimeKey != null){
-            nearestPastDelay = vertexTime - nearestPastTimeKey;
+        if(nearestPastTime != -1){
+            nearestPastDelay = vertexTime - nearestPastTime;
             if(nearestPastDelay <= offer.getHoldDuration()){
-                IntArrayList nearestPastTimeSlot = timeSlots.get(nearestPastTimeKey);
-                nearestPastVertex = nearestPastTimeSlot.get(nearestPastTimeSlot.size() - 1);
-                int e = graph.addDirectedSimpleEdge(nearestPastVertex, vertexId);
-                graph.setEdgeWeight(e, nearestPastDelay);
+                nearestPastVertex = getLastLiveVertex(nearestPastTime);
+                adjacency.addArc(nearestPastVertex, vertexId, nearestPastDelay);
             }
         }
 
         int nearestFutureVertex = -1;
         int nearestFutureDelay = offer.getHoldDuration() + 1;
-        if(nearestFutureTimeKey != null) {
-            nearestFutureDelay = nearestFutureTimeKey - vertexTime;
+        if(nearestFutureTime != -1) {
+            nearestFutureDelay = nearestFutureTime - vertexTime;
             if (nearestFutureDelay <= offer.getHoldDuration()) {
-                IntArrayList nearestFutureTimeSlot = timeSlots.get(nearestFutureTimeKey);
-                nearestFutureVertex = nearestFutureTimeSlot.get(0);
-                int e = graph.addDirectedSimpleEdge(vertexId, nearestFutureVertex);
-                graph.setEdgeWeight(e, nearestFutureDelay);
+                nearestFutureVertex = getFirstLiveVertex(nearestFutureTime);
+                adjacency.addArc(vertexId, nearestFutureVertex, nearestFutureDelay);
             }
         }
 
-        IntArrayList timeSlot = timeSlots.get(vertexTime);
+        if (vertexTime >= timeSlots.length) {
+            int newLength = Math.max(vertexTime + 1, timeSlots.length + (timeSlots.length >> 1));
+            timeSlots = Arrays.copyOf(timeSlots, newLength);
+            liveCounts = Arrays.copyOf(liveCounts, newLength);
+        }
+        IntArrayList timeSlot = timeSlots[vertexTime];
         if (timeSlot == null) {
-            timeSlot = new IntArrayList();
-            timeSlots.put(vertexTime, timeSlot);
+            timeSlot = new IntArrayList(2);
+            timeSlots[vertexTime] = timeSlot;
+        } else if (liveCounts[vertexTime] == 0) {
+            // only tombstones are left
+            timeSlot.clear();
         }
         timeSlot.add(vertexId);
+        liveCounts[vertexTime]++;
+        occupiedTimes.set(vertexTime);
 
-        timeOfferIdToTimeVertexIdTable.put(vertexTime, offer.getId(), vertexId);
+        timeOfferIdToTimeVertexIdMap.put(timeOfferIdKey(vertexTime, offer.getId()), vertexId);
 
         // remove the previous connection between nearestPastVertex and nearestFutureVertex
         if (nearestPastDelay + nearestFutureDelay <= offer.getHoldDuration()) {
-            for (IntCursor edgeCursor : graph.getEdgesConnecting(nearestPastVertex, nearestFutureVertex)) {
-                int edge = edgeCursor.value;
-                graph.removeEdge(edge);
-            }
+            adjacency.removeArcs(nearestPastVertex, nearestFutureVertex);
         }
     }
 
-    public void removeTimeVertex(int vertexId, int time, int offerId) {
-        IntArrayList timeSlot = timeSlots.get(time);
-        if(timeSlot != null){
-            timeSlot.removeFirstOccurrence(vertexId);
-            if(timeSlot.isEmpty()) timeSlots.remove(time);
+    /**
+     * Add the time vertices to the empty time table in one sweep: the vertices are bucketed by time and
+     * every vertex is linked to the next one if it is within the hold duration. The time table and
+     * the links are the same as adding the vertices one by one in the given order, but the waiting arcs
+     * are not added to the graph: each link is given back in the next vertices.
+     *
+     * @param vertexIds      the time vertices in the order they were created
+     * @param vertexTimes    the time of each vertex
+     * @param offerIds       the offer of each vertex
+     * @param holdDuration   the hold duration of the offers of all the vertices
+     * @param nextVertexIds  time vertex --> the next time vertex it is linked to, only set for the linked vertices
+     */
+    public void addTimeVertices(int[] vertexIds, int[] vertexTimes, int[] offerIds, int holdDuration,
+                                int[] nextVertexIds) {
+        if (!occupiedTimes.isEmpty() || !timeOfferIdToTimeVertexIdMap.isEmpty()) {
+            throw new IllegalStateException("the time table is not empty");
         }
 
-        timeOfferIdToTimeVertexIdTable.remove(time, offerId);
+        int maxTime = -1;
+        for (int time : vertexTimes) {
+            assert time >= 0 : "negative time: " + time;
+            maxTime = Math.max(maxTime, time);
+        }
+        if (maxTime >= timeSlots.length) {
+            timeSlots = Arrays.copyOf(timeSlots, maxTime + 1);
+            liveCounts = Arrays.copyOf(liveCounts, maxTime + 1);
+        }
+        for (int i = 0; i < vertexIds.length; i++) {
+            int time = vertexTimes[i];
+            IntArrayList timeSlot = timeSlots[time];
+            if (timeSlot == null) {
+                timeSlot = new IntArrayList(2);
+                timeSlots[time] = timeSlot;
+            }
+            timeSlot.add(vertexIds[i]);
+            liveCounts[time]++;
+            occupiedTimes.set(time);
+            timeOfferIdToTimeVertexIdMap.put(timeOfferIdKey(time, offerIds[i]), vertexIds[i]);
+        }
+
+        int prevVertex = -1;
+        int prevTime = 0;
+        for (int time = occupiedTimes.nextSetBit(0); time != -1; time = occupiedTimes.nextSetBit(time + 1)) {
+            IntArrayList timeSlot = timeSlots[time];
+            for (int i = 0; i < timeSlot.size(); i++) {
+                int vertexId = timeSlot.get(i);
+                if (prevVertex != -1 && time - prevTime <= holdDuration) {
+                    nextVertexIds[prevVertex] = vertexId;
+                }
+                prevVertex = vertexId;
+                prevTime = time;
+            }
+        }
     }
 
-    public void updateTimeVertexOfferId(int vertexId, int time, int prevOfferId, int offerId) {
-        timeOfferIdToTimeVertexIdTable.remove(time, prevOfferId);
-        timeOfferIdToTimeVertexIdTable.put(time, offerId, vertexId);
+    public void removeTimeVertex(int vertexId, int time, int offerId) {
+        IntArrayList timeSlot = time < timeSlots.length ? timeSlots[time] : null;
+        int index = timeSlot == null ? -1 : timeSlot.indexOf(vertexId);
+        if(index != -1){
+            timeSlot.set(index, TOMBSTONE);
+            if(--liveCounts[time] == 0) occupiedTimes.clear(time);
+        }
+
+        timeOfferIdToTimeVertexIdMap.remove(timeOfferIdKey(time, offerId));
     }
 
     public boolean isEmpty(){
-        return timeSlots.isEmpty();
+        return occupiedTimes.isEmpty();
     }
 
     public int findFirstTimeVertex(int departureTime) {
-        Integer nearestFutureTimeKey = timeSlots.ceilingKey(departureTime);
-        if(nearestFutureTimeKey == null ) return -1;
-        IntArrayList nearestFutureTimeSlot = timeSlots.get(nearestFutureTimeKey);
-        return nearestFutureTimeSlot.get(0);
+        int nearestFutureTime = occupiedTimes.nextSetBit(Math.max(departureTime, 0));
+        if(nearestFutureTime == -1) return -1;
+        return getFirstLiveVertex(nearestFutureTime);
     }
 
 
     public int findLastTimeVertex(int arrivalTime) {
-        Integer nearestPastTimeKey = timeSlots.floorKey(arrivalTime);
-        if(nearestPastTimeKey == null ) return -1;
-        IntArrayList nearestPastTimeSlot = timeSlots.get(nearestPastTimeKey);
-        return nearestPastTimeSlot.get(nearestPastTimeSlot.size() - 1);
+        if(arrivalTime < 0) return -1;
+        int nearestPastTime = occupiedTimes.previousSetBit(arrivalTime);
+        if(nearestPastTime == -1) return -1;
+        return getLastLiveVertex(nearestPastTime);
+    }
+
+    /**
+     * @param departureTime the earliest departure time
+     * @return a cursor over the time vertices at or after the departure time, in time order
+     */
+    public DepartureCursor getDepartures(int departureTime) {
+        return new DepartureCursor(departureTime);
+    }
+
+    private int getFirstLiveVertex(int time) {
+        IntArrayList timeSlot = timeSlots[time];
+        for (int i = 0; i < timeSlot.size(); i++) {
+            if (timeSlot.get(i) != TOMBSTONE) return timeSlot.get(i);
+        }
+        return -1;
     }
 
-    public int findNextTimeVertex(int departureTime, int startVertexId) {
-        Integer nearestFutureTimeKey = timeSlots.ceilingKey(departureTime);
-        if(nearestFutureTimeKey == null ) return -1;
-        IntArrayList nearestFutureTimeSlot = timeSlots.get(nearestFutureTimeKey);
-        int index = nearestFutureTimeSlot.indexOf(startVertexId);
-        if(index == nearestFutureTimeSlot.size() -1){
-            return findFirstTimeVertex(departureTime + 1);
+    private int getLastLiveVertex(int time) {
+        IntArrayList timeSlot = timeSlots[time];
+        for (int i = timeSlot.size() - 1; i >= 0; i--) {
+            if (timeSlot.get(i) != TOMBSTONE) return timeSlot.get(i);
         }
-        else{
-            return index == -1? -1 : nearestFutureTimeSlot.get(index+1);
+        return -1;
+    }
+
+    /**
+     * Walks forward over the time vertices of the time table, each slot position is visited once.
+     *
+     * The time vertices removed from the time table while walking are skipped, the ones added
+     * are not guaranteed to be visited.
+     */
+    public final class DepartureCursor {
+        private int time;
+        private int index;
+
+        private DepartureCursor(int departureTime) {
+            time = occupiedTimes.nextSetBit(Math.max(departureTime, 0));
+            index = 0;
+        }
+
+        /**
+         * @return the next time vertex, -1 if there is none
+         */
+        public int next() {
+            while (time != -1) {
+                IntArrayList timeSlot = timeSlots[time];
+                while (index < timeSlot.size()) {
+                    int vertexId = timeSlot.get(index++);
+                    if (vertexId != TOMBSTONE) return vertexId;
+                }
+                time = occupiedTimes.nextSetBit(time + 1);
+                index = 0;
+            }
+            return -1;
         }
     }
 }
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Random;
 
 /**
  * The class to store the configuration/status of the matching model read from the excel
@@ -137,7 +138,37 @@ public class MatchingModel {
         excelReader.close();
     }
 
-    public void shuffle(boolean isFullRandom){
+    /**
+     * Copy the model, e.g. for another thread. The copy shares the station config with the model,
+     * and starts from the current departure times of the drivers without any parcel assigned.
+     * The time expanded graph of the copy is built by its first {@link #shuffle}, which must come before solving it.
+     */
+    public MatchingModel(MatchingModel model) {
+        id = model.id;
+        numStations = model.numStations;
+        numDrivers = model.numDrivers;
+        numParcels = model.numParcels;
+        detour = model.detour;
+
+        weightTravelDistanceInKilometer = model.weightTravelDistanceInKilometer;
+        weightNumParcelTransfer = model.weightNumParcelTransfer;
+        weightShippingCost = model.weightShippingCost;
+        weightWaitingTime = model.weightWaitingTime;
+        weightExtraTime = model.weightExtraTime;
+
+        stationConfig = model.stationConfig;
+        driverConfig = new DriverConfig(model.driverConfig);
+        parcelConfig = new ParcelConfig(model.parcelConfig);
+    }
+
+    /**
+     * Drop the current assignment and draw new departure times from the generator
+     *
+     * @param isFullRandom whether the departure times of all the drivers are drawn,
+     *                     otherwise the drivers assigned in the current solution keep theirs
+     * @param rand         the random generator
+     */
+    public void shuffle(boolean isFullRandom, Random rand){
         IntSet assignedDriverIdSet;
         if(isFullRandom){
             assignedDriverIdSet = new IntOpenHashSet();
@@ -146,10 +177,9 @@ public class MatchingModel {
             assignedDriverIdSet = parcelConfig.getAssignedDriverIdSet();
         }
         parcelConfig.reset();
-        driverConfig.shuffleAndRebuildTimeExpandedGraph(stationConfig.getStationGraph(), assignedDriverIdSet);
+        driverConfig.shuffleAndRebuildTimeExpandedGraph(stationConfig.getStationGraph(), assignedDriverIdSet, rand);
     }
 
-
     public void outputShortestDistance(String filePath) throws IOException, WriteException, BiffException {
         ClassLoader classLoader = getClass().getClassLoader();
         InputStream is = classLoader.getResourceAsStream(filePath);
@@ -0,0 +1,117 @@
+package nl.twente.bms.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the full random restarts of a matching model on several threads.
+ *
+ * A full random restart draws the departure times of all the drivers, so it does not depend on the
+ * previous restarts and the restarts can run in any order. The constrained restarts keep the departure
+ * times of the drivers assigned by the previous restart, they are chained and run on the model itself.
+ * Every worker solves on its own copy of the model, the copies share the station config of the model.
+ * The departure times of a restart are drawn from a generator seeded with the seed and the iteration,
+ * so the cost of a restart neither depends on the number of threads nor on the worker running it.
+ *
+ * @author Feng Zhao (feng.zhao@feedzai.com)
+ * @since 1.0
+ */
+public class RestartEngine {
+    private static final Logger logger = LoggerFactory.getLogger(RestartEngine.class);
+
+    private final MatchingModel model;
+    private final long seed;
+    private final int numThreads;
+
+    /**
+     * @param model      the model, it must not change while the restarts run
+     * @param seed       the seed of the restarts
+     * @param numThreads the number of worker threads
+     */
+    public RestartEngine(MatchingModel model, long seed, int numThreads) {
+        assert numThreads > 0 : "numThreads: " + numThreads;
+        this.model = model;
+        this.seed = seed;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Run the full random restarts of the iterations from firstIter to lastIter, both included
+     *
+     * @return the result of the restarts
+     */
+    public Result run(int firstIter, int lastIter) {
+        int numIter = Math.max(lastIter - firstIter + 1, 0);
+        double[] costs = new double[numIter];
+        // the model copies not used by a worker at the moment
+        ConcurrentLinkedQueue<MatchingModel> idleModels = new ConcurrentLinkedQueue<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, Math.max(numIter, 1)));
+        try {
+            List<Future<?>> futures = new ArrayList<>(numIter);
+            for (int k = 0; k < numIter; k++) {
+                int iter = firstIter + k;
+                int index = k;
+                futures.add(executor.submit(() -> {
+                    MatchingModel workerModel = idleModels.poll();
+                    if (workerModel == null) workerModel = new MatchingModel(model);
+                    workerModel.shuffle(true, new Random(getIterationSeed(iter)));
+                    workerModel.solve();
+                    costs[index] = workerModel.computeCost();
+                    idleModels.add(workerModel);
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while running the restarts", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("a restart failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info("{} restarts run on {} model copies", numIter, idleModels.size());
+        return new Result(firstIter, costs);
+    }
+
+    private long getIterationSeed(int iter) {
+        long iterationSeed = seed ^ (0x9E3779B97F4A7C15L * iter);
+        return iterationSeed ^ (iterationSeed >>> 31);
+    }
+
+    /**
+     * The costs of the restarts of a run
+     */
+    public static class Result {
+        private final int firstIter;
+        private final double[] costs;
+
+        private Result(int firstIter, double[] costs) {
+            this.firstIter = firstIter;
+            this.costs = costs;
+        }
+
+        public int getFirstIter() {
+            return firstIter;
+        }
+
+        public int getNumIter() {
+            return costs.length;
+        }
+
+        public double getCost(int iter) {
+            return costs[iter - firstIter];
+        }
+    }
+}
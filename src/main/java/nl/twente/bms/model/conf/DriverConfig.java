@@ -2,6 +2,7 @@ package nl.twente.bms.model.conf;
 
 import com.carrotsearch.hppc.*;
 import com.carrotsearch.hppc.cursors.ObjectCursor;
+import nl.twente.bms.algo.struct.OfferSubgraph;
 import nl.twente.bms.algo.struct.StationGraph;
 import nl.twente.bms.algo.struct.TimeExpandedGraph;
 import nl.twente.bms.model.elem.Driver;
@@ -22,19 +23,18 @@ import java.util.stream.IntStream;
 public class DriverConfig {
     private static final Logger logger = LoggerFactory.getLogger(DriverConfig.class);
 
-    private int nextOfferId;
 //    private IntObjectMap<Driver> driverMap;
     private ObjectArrayList<Driver> driverList;
-    private IntObjectMap<Offer> offerMap;
+    private OfferTable offerTable;
     private TimeExpandedGraph timeExpandedGraph;
+    // driver index --> the subgraph of the driver's init offer at its last departure time
+    private OfferSubgraph[] initOfferSubgraphs;
 
     private int[] driverIndices;
 
 
     public DriverConfig(int numDrivers, double detourInput, ExcelReader excelReader,
                         StationGraph stationGraph, boolean isRandom, int[] driverIndicesIn) {
-        nextOfferId = 0;
-
         double detour = detourInput;
         double speed = Double.parseDouble(excelReader.xlsread("Input", 1, 4));
         double delay = Double.parseDouble(excelReader.xlsread("Input", 1, 17));
@@ -103,12 +103,10 @@ public class DriverConfig {
             }
         }
 
-        timeExpandedGraph = new TimeExpandedGraph(stationGraph, this);
-
         //index driver object in driver map
 //        driverMap = new IntObjectOpenHashMap<>(numDrivers);
         driverList = new ObjectArrayList<>(numDrivers);
-        offerMap = new IntObjectOpenHashMap<>(numDrivers);
+        offerTable = new OfferTable(numDrivers);
 
         for (int i = 0; i < numDrivers; i++) {
             int source = Integer.parseInt(startStationArray[i]);
@@ -123,51 +121,139 @@ public class DriverConfig {
 //            driverMap.put(Integer.parseInt(idStrArray[i]), driver);
             driverList.add(driver);
         }
+
+        computeTravelTimeLowerBounds(stationGraph);
         buildTimeExpandedGraph(stationGraph);
     }
 
-    public void shuffleAndRebuildTimeExpandedGraph(StationGraph stationGraph, IntSet assignedDriverIdSet){
-        nextOfferId = 0;
-        offerMap.clear();
+    /**
+     * Create the driver config of the given drivers, numbered from 1 in their order
+     *
+     * @param driverList   the drivers, their departure times are kept
+     * @param stationGraph the station graph with its shortest distances computed
+     */
+    public DriverConfig(ObjectArrayList<Driver> driverList, StationGraph stationGraph) {
+        this.driverList = driverList;
+        offerTable = new OfferTable(driverList.size());
+        driverIndices = IntStream.rangeClosed(1, driverList.size()).toArray();
+
+        computeTravelTimeLowerBounds(stationGraph);
+        buildTimeExpandedGraph(stationGraph);
+    }
+
+    /**
+     * Compute the lower bounds of the goal directed searches in the time expanded graph, at the fastest driver speed
+     */
+    private void computeTravelTimeLowerBounds(StationGraph stationGraph) {
+        double maxSpeed = 0;
+        for (ObjectCursor<Driver> driverCursor : driverList) {
+            maxSpeed = Math.max(maxSpeed, driverCursor.value.getSpeed());
+        }
+        if (maxSpeed > 0) {
+            stationGraph.computeTravelTimeLowerBounds(maxSpeed);
+        }
+    }
+
+    /**
+     * Copy the driver config, the drivers are copied with their current departure times.
+     * The copy has no time expanded graph until {@link #shuffleAndRebuildTimeExpandedGraph} builds it,
+     * as the departure times are usually shuffled before the copy is solved.
+     *
+     * @param driverConfig the driver config to copy
+     */
+    public DriverConfig(DriverConfig driverConfig) {
+        driverList = new ObjectArrayList<>(driverConfig.driverList.size());
+        for (ObjectCursor<Driver> driverCursor : driverConfig.driverList) {
+            driverList.add(new Driver(driverCursor.value));
+        }
+        offerTable = new OfferTable(driverList.size());
+        driverIndices = driverConfig.driverIndices;
+        // the subgraphs are not changed once built, the copy only gets its own cache slots
+        initOfferSubgraphs = driverConfig.initOfferSubgraphs.clone();
+    }
+
+    /**
+     * Shuffle the departure times of the drivers not in the set and rebuild the time expanded graph.
+     *
+     * @param rand the random generator to draw the departure times from in the order of the drivers
+     */
+    public void shuffleAndRebuildTimeExpandedGraph(StationGraph stationGraph, IntSet assignedDriverIdSet, Random rand){
         for (ObjectCursor<Driver> driverCursor: driverList) {
-            driverCursor.value.reset();
             if(!assignedDriverIdSet.contains(driverCursor.value.getId())){
-                driverCursor.value.shuffle();
+                driverCursor.value.shuffle(rand);
             }
         }
 //        timeExpandedGraph.clear();
         buildTimeExpandedGraph(stationGraph);
     }
 
+    /**
+     * Build the time expanded graph of the drivers' init offers, the offer of a driver has the index of the driver
+     * as id. The init offer subgraph of a driver is only computed again if the driver's departure time changed
+     * since the previous build. The subgraphs do not depend on each other and are computed in parallel,
+     * then they are added to the graph in the order of the drivers, so the graph is the same as
+     * the one built sequentially.
+     */
     private void buildTimeExpandedGraph(StationGraph stationGraph){
-        timeExpandedGraph = new TimeExpandedGraph(stationGraph, this);
+        offerTable.clear();
         for (ObjectCursor<Driver> driverCursor: driverList) {
-            int currentId = getNextOfferId();
-            Offer offer = driverCursor.value.createInitOffer(currentId, stationGraph);
-            offerMap.put(currentId, offer);
-            timeExpandedGraph.addOffer(offer);
+            driverCursor.value.reset();
+        }
+        timeExpandedGraph = new TimeExpandedGraph(stationGraph, this);
+        if (initOfferSubgraphs == null) {
+            initOfferSubgraphs = new OfferSubgraph[driverList.size()];
+        }
+        Offer[] offers = new Offer[driverList.size()];
+        for (int i = 0; i < driverList.size(); i++) {
+            offers[i] = driverList.get(i).createInitOffer(i, stationGraph);
+            offerTable.add(offers[i]);
+        }
+
+        IntStream.range(0, offers.length).parallel().forEach(i -> {
+            OfferSubgraph subgraph = initOfferSubgraphs[i];
+            if (subgraph == null || subgraph.getDepartureTime() != offers[i].getDepartureTime()) {
+                initOfferSubgraphs[i] = timeExpandedGraph.buildOfferSubgraph(offers[i]);
+            }
+        });
+
+        timeExpandedGraph.addOffers(offers, initOfferSubgraphs);
+        for (Offer offer : offers) {
             logger.info(offer.toString());
         }
 //        timeExpandedGraph.display();
     }
 
-    public int getNextOfferId() {
-        return nextOfferId++;
-    }
-
+    /**
+     * @return the time expanded graph, null for a copy not shuffled yet
+     */
     public TimeExpandedGraph getTimeExpandedGraph() {
         return timeExpandedGraph;
     }
 
     public Offer getOfferById(int offerId) {
-        return offerMap.get(offerId);
+        return offerTable.get(offerId);
     }
     public int getDriverIdByOfferId(int offerId) {
-        return offerMap.get(offerId).getDriverId();
+        return offerTable.getDriverId(offerId);
+    }
+
+    /**
+     * The generation of the live time vertices of the offer, the time vertices of the older generations are dead
+     */
+    public int getOfferGeneration(int offerId) {
+        return offerTable.getGeneration(offerId);
+    }
+
+    public int nextOfferGeneration(int offerId) {
+        return offerTable.nextGeneration(offerId);
+    }
+
+    public void addOfferLoad(int offerId, int from, int to, int load) {
+        offerTable.addLoad(offerId, from, to, load);
     }
 
-    public void addOffer(Offer offer) {
-        offerMap.put(offer.getId(), offer);
+    public int getOfferFreeCapacity(int offerId, int from, int to) {
+        return offerTable.getFreeCapacity(offerId, from, to);
     }
 
 //    public IntObjectMap<Driver> getDriverMap() {
@@ -0,0 +1,137 @@
+package nl.twente.bms.model.conf;
+
+import nl.twente.bms.algo.struct.LoadTimeline;
+import nl.twente.bms.model.elem.Offer;
+
+import java.util.Arrays;
+
+/**
+ * The class to store the offers indexed by their ids
+ *
+ * Every driver has one offer, its id is the index of the driver, so the offers are kept in a dense array.
+ * The fields read while searching the time expanded graph are kept in parallel columns: the capacity
+ * and the id of the driver, the generation of the live time vertices of the offer and the load timeline
+ * of the driver. An id within the size that was never added is left empty: it has no offer and no capacity.
+ * All the accessors throw an {@link IndexOutOfBoundsException} for an id that is not in the table.
+ *
+ * @author Feng Zhao (feng.zhao@feedzai.com)
+ * @since 1.0
+ */
+public class OfferTable {
+    private Offer[] offers;
+    private int[] capacities;
+    private int[] driverIds;
+    // offer id --> the generation of the live time vertices of the offer, the older ones are dead
+    private int[] generations;
+    // offer id --> the load the driver carries, created with the first load
+    private LoadTimeline[] loadTimelines;
+    // one more than the greatest offer id in the table
+    private int size;
+
+    public OfferTable(int capacity) {
+        offers = new Offer[capacity];
+        capacities = new int[capacity];
+        driverIds = new int[capacity];
+        generations = new int[capacity];
+        loadTimelines = new LoadTimeline[capacity];
+    }
+
+    /**
+     * Add the offer at its id, in its first generation and without load
+     */
+    public void add(Offer offer) {
+        int id = offer.getId();
+        if (id >= offers.length) {
+            int newLength = Math.max(id + 1, offers.length + (offers.length >> 1));
+            offers = Arrays.copyOf(offers, newLength);
+            capacities = Arrays.copyOf(capacities, newLength);
+            driverIds = Arrays.copyOf(driverIds, newLength);
+            generations = Arrays.copyOf(generations, newLength);
+            loadTimelines = Arrays.copyOf(loadTimelines, newLength);
+        }
+        offers[id] = offer;
+        capacities[id] = offer.getCapacity();
+        driverIds[id] = offer.getDriverId();
+        generations[id] = 0;
+        loadTimelines[id] = null;
+        size = Math.max(size, id + 1);
+    }
+
+    private void checkId(int offerId) {
+        if (offerId < 0 || offerId >= size) {
+            throw new IndexOutOfBoundsException("offer id: " + offerId + ", size: " + size);
+        }
+    }
+
+    /**
+     * @return the offer, null if no offer was added at the id
+     */
+    public Offer get(int offerId) {
+        checkId(offerId);
+        return offers[offerId];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity(int offerId) {
+        checkId(offerId);
+        return capacities[offerId];
+    }
+
+    public int getDriverId(int offerId) {
+        checkId(offerId);
+        return driverIds[offerId];
+    }
+
+    public int getGeneration(int offerId) {
+        checkId(offerId);
+        return generations[offerId];
+    }
+
+    /**
+     * Start the next generation of the offer, the time vertices of the previous generations are dead
+     *
+     * @return the next generation
+     */
+    public int nextGeneration(int offerId) {
+        checkId(offerId);
+        return ++generations[offerId];
+    }
+
+    /**
+     * Record that the driver of the offer carries the load from the time from, included, to the time to, excluded
+     */
+    public void addLoad(int offerId, int from, int to, int load) {
+        checkId(offerId);
+        LoadTimeline loadTimeline = loadTimelines[offerId];
+        if (loadTimeline == null) {
+            Offer offer = offers[offerId];
+            int endTime = offer.getDepartureTime() + offer.getMaxDuration();
+            loadTimeline = new LoadTimeline(Math.min(offer.getDepartureTime(), from), Math.max(endTime, to));
+            loadTimelines[offerId] = loadTimeline;
+        }
+        loadTimeline.addLoad(from, to, load);
+    }
+
+    /**
+     * @return the capacity the driver of the offer has left over the whole time from the time from, included,
+     * to the time to, excluded
+     */
+    public int getFreeCapacity(int offerId, int from, int to) {
+        checkId(offerId);
+        LoadTimeline loadTimeline = loadTimelines[offerId];
+        if (loadTimeline == null) return capacities[offerId];
+        return capacities[offerId] - loadTimeline.getMaxLoad(from, to);
+    }
+
+    public void clear() {
+        Arrays.fill(offers, 0, size, null);
+        Arrays.fill(capacities, 0, size, 0);
+        Arrays.fill(driverIds, 0, size, 0);
+        Arrays.fill(generations, 0, size, 0);
+        Arrays.fill(loadTimelines, 0, size, null);
+        size = 0;
+    }
+}
@@ -114,6 +114,20 @@ public class ParcelConfig {
         logger.info("The most costly parcel: {}", parcelSortedList.get(0));
     }
 
+    /**
+     * Copy the parcel config, the parcels are copied without their assignments
+     */
+    public ParcelConfig(ParcelConfig parcelConfig) {
+        parcelMap = new IntObjectOpenHashMap<>(parcelConfig.parcelSortedList.size());
+        parcelSortedList = new ArrayList<>(parcelConfig.parcelSortedList.size());
+        for (Parcel parcel : parcelConfig.parcelSortedList) {
+            Parcel parcelCopy = new Parcel(parcel);
+            parcelMap.put(parcelCopy.getId(), parcelCopy);
+            parcelSortedList.add(parcelCopy);
+        }
+        parcelIndices = parcelConfig.parcelIndices;
+    }
+
     public ArrayList<Parcel> getParcelSortedList() {
         return parcelSortedList;
     }
@@ -28,6 +28,7 @@ public class StationConfig {
             stationGraph.addVertex(i + 1);
             vLabel.setValue(i + 1, Integer.toString(i + 1));
         }
+        stationGraph.initDirectDistances();
 
         for (int col = 0; col < numStations; col++) {
             for (int row = 0; row < numStations; row++) {
@@ -47,7 +48,9 @@ public class StationConfig {
             }
         }
         stationGraph.setVerticesLabel(vLabel);
-        stationGraph.computeAllSourceShortestDistances();
+        stationGraph.buildCompactGraph();
+        // all the station edges are undirected
+        stationGraph.computeAllSourceShortestDistances(true);
     }
 
     public StationGraph getStationGraph() {
@@ -35,10 +35,11 @@ public class Driver {
     private double speed;
     private int capacity;
 
-    private List<Offer> offers;
-
-    private Random rand = new Random(System.currentTimeMillis());
-
+    // the offer of the driver, null if its init offer is not feasible
+    private Offer offer;
+    // the stations the driver committed to stop at for the assigned parcels, with the times, in time order
+    private IntArrayList stopStationIds;
+    private IntArrayList stopTimes;
 
 
     public Driver(int id, int source, int target, double epsilon, double gamma,
@@ -59,10 +60,38 @@ public class Driver {
 
         this.latestDepartureTime = latestArrivalTime - getDuration(shortestPathDistance);
 
-        this.offers = new ArrayList<>();
-    }
-
-    public void shuffle() {
+        this.stopStationIds = new IntArrayList();
+        this.stopTimes = new IntArrayList();
+    }
+
+    /**
+     * Copy the driver with its current departure time, without its offer and stops
+     */
+    public Driver(Driver driver) {
+        this.id = driver.id;
+        this.source = driver.source;
+        this.target = driver.target;
+        this.epsilon = driver.epsilon;
+        this.gamma = driver.gamma;
+        this.earliestDepartureTime = driver.earliestDepartureTime;
+        this.latestDepartureTime = driver.latestDepartureTime;
+        this.latestArrivalTime = driver.latestArrivalTime;
+        this.shortestPathDistance = driver.shortestPathDistance;
+        this.departureTime = driver.departureTime;
+        this.hold = driver.hold;
+        this.speed = driver.speed;
+        this.capacity = driver.capacity;
+
+        this.stopStationIds = new IntArrayList();
+        this.stopTimes = new IntArrayList();
+    }
+
+    /**
+     * Draw the departure time between the earliest and the latest departure time
+     *
+     * @param rand the random generator to draw from
+     */
+    public void shuffle(Random rand) {
         departureTime = earliestDepartureTime + (int)(rand.nextFloat()* (latestDepartureTime - earliestDepartureTime));
     }
 
@@ -119,8 +148,16 @@ public class Driver {
         return offer;
     }
 
-    public void addOffer(Offer offer) {
-        offers.add(offer);
+    public void setOffer(Offer offer) {
+        this.offer = offer;
+    }
+
+    /**
+     * Record a stop of the driver, the stops are added in time order
+     */
+    public void addStop(int stationId, int time) {
+        stopStationIds.add(stationId);
+        stopTimes.add(time);
     }
 
     public String toString() {
@@ -140,14 +177,20 @@ public class Driver {
     public double getCost(double weightWaitingTime, double weightExtraTime, StationGraph stationGraph){
         IntSet stationIdSet = new IntOpenHashSet();
         IntArrayList stationIdList = new IntArrayList();
-        Collections.sort(offers, (o1, o2) -> o1.getEarliestArrivalTime() - o2.getEarliestArrivalTime());
 
+        // the stations in the order of the arrival times, the target at the direct arrival time
         stationIdList.add(source);
-        for(Offer offer: offers){
-            if(!stationIdSet.contains(offer.getTarget())){
-                stationIdSet.add(offer.getTarget());
-                stationIdList.add(offer.getTarget());
+        if (offer != null) {
+            int directArrivalTime = departureTime + getDuration(shortestPathDistance);
+            boolean isTargetAdded = false;
+            for (int i = 0; i < stopStationIds.size(); i++) {
+                if (!isTargetAdded && stopTimes.get(i) >= directArrivalTime) {
+                    addStation(target, stationIdSet, stationIdList);
+                    isTargetAdded = true;
+                }
+                addStation(stopStationIds.get(i), stationIdSet, stationIdList);
             }
+            if (!isTargetAdded) addStation(target, stationIdSet, stationIdList);
         }
 
         int numHolds = stationIdList.size() - 2;
@@ -164,11 +207,19 @@ public class Driver {
         return waitingTimeCost + extraTimeCost;
     }
 
+    private static void addStation(int stationId, IntSet stationIdSet, IntArrayList stationIdList) {
+        if (stationIdSet.add(stationId)) {
+            stationIdList.add(stationId);
+        }
+    }
+
     public int getDepartureTime() {
         return departureTime;
     }
 
     public void reset(){
-        offers.clear();
+        offer = null;
+        stopStationIds.clear();
+        stopTimes.clear();
     }
 }
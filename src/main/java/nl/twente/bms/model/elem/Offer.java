@@ -17,8 +17,6 @@ import java.util.List;
 public class Offer {
     private int id;
 
-    private boolean isUpdatedOffer;
-
     private Driver driver;
 
     private int source;
@@ -34,11 +32,15 @@ public class Offer {
     private int maxDuration;
     private int maxDetour;
 
+    // the stations within the candidate detour from the source to the target, in the order of the station graph,
+    // null until the subgraph of the offer is added
+    private int[] candidateStations;
+    private int candidateDetour;
+
     private List<Parcel> parcels;
 
     public Offer(int id, int source, int target, int departureTime, int capacity, Driver driver, StationGraph stationGraph) {
         this.id = id;
-        this.isUpdatedOffer = false;
         this.source = source;
         this.target = target;
         this.departureTime = departureTime;
@@ -51,46 +53,26 @@ public class Offer {
 
         this.parcels = new ArrayList<>();
         if(isFeasible()){
-            this.driver.addOffer(this);
-        }
-    }
-
-    public Offer(int id, Offer offer, int volume, int newTargetTimeVertexId, int newTargetStationId, int timeAtNewTargetStationId){
-        this.id = id;
-        this.isUpdatedOffer = true;
-        this.source = offer.source;
-        this.sourceTimeVertex = offer.sourceTimeVertex;
-        this.departureTime = offer.departureTime;
-        this.target = newTargetStationId;
-        this.targetTimeVertex = newTargetTimeVertexId;
-        this.earliestArrivalTime = timeAtNewTargetStationId;
-        this.capacity = offer.capacity - volume;
-        this.driver = offer.driver;
-        maxDetour = offer.getMaxDetour();
-        maxDuration = offer.getMaxDuration();
-        this.parcels = new ArrayList<>();
-        if(isFeasible()){
-            this.driver.addOffer(this);
+            this.driver.setOffer(this);
         }
     }
 
-    public Offer(int id, Offer offer, int newSourceTimeVertexId, int newSourceStationId, int timeAtNewSourceStationId) {
-        this.id = id;
-        this.isUpdatedOffer = offer.isUpdatedOffer;
+    /**
+     * Continue the offer from a stop of the driver: the offer departs again from the time vertex of the stop,
+     * the duration and the detour of the route up to the stop are taken off its budgets.
+     * The candidate stations stay: a station within the candidate detour from the stop is within it
+     * from the source, once the distance from the source to the stop is taken off the candidate detour.
+     *
+     * @param distanceToNewSource the shortest distance from the source to the stop
+     */
+    public void continueFrom(int newSourceTimeVertexId, int newSourceStationId, int timeAtNewSourceStationId,
+                             int distanceToNewSource) {
+        candidateDetour -= distanceToNewSource;
+        maxDuration -= timeAtNewSourceStationId - departureTime;
+        maxDetour -= getDistance(timeAtNewSourceStationId - departureTime);
         this.source = newSourceStationId;
         this.sourceTimeVertex = newSourceTimeVertexId;
         this.departureTime = timeAtNewSourceStationId;
-        this.target = offer.target;
-        this.targetTimeVertex = offer.targetTimeVertex;
-        this.earliestArrivalTime = offer.earliestArrivalTime;
-        this.capacity = offer.capacity;
-        this.driver = offer.driver;
-        maxDuration = offer.getMaxDuration() - (this.departureTime - offer.departureTime);
-        maxDetour = offer.getMaxDetour() - getDistance(this.departureTime - offer.departureTime);
-        this.parcels = new ArrayList<>();
-        if(isFeasible()){
-            this.driver.addOffer(this);
-        }
     }
 
     public boolean isFeasible(){
@@ -157,12 +139,24 @@ public class Offer {
         return maxDetour;
     }
 
-    public void addParcel(Parcel parcel){
-        parcels.add(parcel);
+    /**
+     * @return the stations the subgraph of the offer can be built from, null if every station must be scanned
+     */
+    public int[] getCandidateStations() {
+        return candidateStations;
+    }
+
+    public int getCandidateDetour() {
+        return candidateDetour;
+    }
+
+    public void setCandidateStations(int[] candidateStations, int candidateDetour) {
+        this.candidateStations = candidateStations;
+        this.candidateDetour = candidateDetour;
     }
 
-    public boolean isUpdatedOffer() {
-        return isUpdatedOffer;
+    public void addParcel(Parcel parcel){
+        parcels.add(parcel);
     }
 
     public String toString() {
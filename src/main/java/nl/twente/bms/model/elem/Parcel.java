@@ -39,6 +39,14 @@ public class Parcel implements Comparable<Parcel> {
         this.numOffers = 0;
     }
 
+    /**
+     * Copy the parcel without its assignment
+     */
+    public Parcel(Parcel parcel) {
+        this(parcel.id, parcel.startStationId, parcel.endStationId, parcel.earliestDepartureTime,
+                parcel.latestArrivalTime, parcel.shippingCompanyCost, parcel.volume);
+    }
+
     public int getId() {
         return id;
     }
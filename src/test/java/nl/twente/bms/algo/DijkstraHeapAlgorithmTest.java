@@ -0,0 +1,65 @@
+package nl.twente.bms.algo;
+
+import grph.Grph;
+import grph.algo.search.SearchResult;
+import grph.properties.NumericalProperty;
+import nl.twente.bms.algo.struct.StationGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link DijkstraHeapAlgorithm}.
+ */
+public class DijkstraHeapAlgorithmTest {
+    private StationGraph stationGraph;
+    private int shortcut;
+
+    @Before
+    public void setUp() {
+        stationGraph = new StationGraph();
+        for (int v = 0; v < 3; v++) {
+            stationGraph.addVertex(v);
+        }
+        stationGraph.setEdgeWeight(stationGraph.addUndirectedSimpleEdge(0, 1), 10);
+        stationGraph.setEdgeWeight(stationGraph.addUndirectedSimpleEdge(1, 2), 10);
+        shortcut = stationGraph.addUndirectedSimpleEdge(0, 2);
+        stationGraph.setEdgeWeight(shortcut, 30);
+        stationGraph.buildCompactGraph();
+    }
+
+    private SearchResult search(NumericalProperty weightProperty) {
+        return new DijkstraHeapAlgorithm(weightProperty).compute(stationGraph, 0, Grph.DIRECTION.out, null);
+    }
+
+    @Test
+    public void searchesWithTheStationGraphWeights() {
+        SearchResult result = search(stationGraph.getWeightProperty());
+
+        assertEquals(0, result.distances[0]);
+        assertEquals(10, result.distances[1]);
+        assertEquals(20, result.distances[2]);
+        assertEquals(1, result.predecessors[2]);
+    }
+
+    @Test
+    public void searchesWithItsOwnWeightsInsteadOfTheSnapshot() {
+        NumericalProperty weightProperty = new NumericalProperty("other weight", 16, 10);
+        weightProperty.setValue(shortcut, 5);
+        SearchResult result = search(weightProperty);
+
+        assertEquals(5, result.distances[2]);
+        assertEquals(0, result.predecessors[2]);
+    }
+
+    @Test
+    public void snapshotFollowsTheWeightsOnceRebuilt() {
+        stationGraph.setEdgeWeight(shortcut, 1);
+        stationGraph.buildCompactGraph();
+        SearchResult result = search(stationGraph.getWeightProperty());
+
+        assertEquals(1, result.distances[2]);
+        assertEquals(0, result.predecessors[2]);
+    }
+}
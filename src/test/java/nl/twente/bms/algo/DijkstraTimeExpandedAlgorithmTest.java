@@ -0,0 +1,159 @@
+package nl.twente.bms.algo;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.ObjectArrayList;
+import grph.Grph;
+import grph.path.Path;
+import nl.twente.bms.algo.struct.StationGraph;
+import nl.twente.bms.algo.struct.TimeExpandedAdjacency;
+import nl.twente.bms.algo.struct.TimeExpandedGraph;
+import nl.twente.bms.model.conf.DriverConfig;
+import nl.twente.bms.model.elem.Driver;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link DijkstraTimeExpandedAlgorithm}.
+ */
+public class DijkstraTimeExpandedAlgorithmTest {
+    private static final int NUM_STATIONS = 5;
+    private static final int VOLUME = 1;
+
+    private TimeExpandedGraph tGraph;
+    private DijkstraTimeExpandedAlgorithm plainSearch;
+    private DijkstraTimeExpandedAlgorithm goalDirectedSearch;
+
+    /**
+     * The line 1 - 2 - 3 - 4 with the station 5 beside it, and drivers of two speeds
+     * departing at different times, so the parcels can wait and change drivers
+     */
+    @Before
+    public void setUp() {
+        StationGraph stationGraph = new StationGraph();
+        for (int v = 1; v <= NUM_STATIONS; v++) {
+            stationGraph.addVertex(v);
+        }
+        stationGraph.initDirectDistances();
+        int[][] edges = {{1, 2, 10}, {2, 3, 10}, {3, 4, 10}, {1, 5, 12}, {5, 4, 20}, {2, 5, 6}, {5, 3, 9}};
+        for (int[] edge : edges) {
+            stationGraph.setEdgeWeight(stationGraph.addUndirectedSimpleEdge(edge[0], edge[1]), edge[2]);
+            stationGraph.setDirectDistance(edge[0], edge[1], edge[2]);
+        }
+        stationGraph.buildCompactGraph();
+        stationGraph.computeAllSourceShortestDistances(true);
+
+        int[][] drivers = {
+                // source, target, earliest departure, latest arrival, speed
+                {1, 4, 0, 120, 60}, {2, 4, 5, 100, 30}, {5, 3, 10, 90, 60}, {1, 3, 20, 150, 60},
+                {2, 1, 0, 80, 30}, {1, 4, 40, 200, 60}, {5, 1, 30, 120, 60}, {3, 5, 15, 100, 30}};
+        ObjectArrayList<Driver> driverList = new ObjectArrayList<>();
+        for (int i = 0; i < drivers.length; i++) {
+            int[] d = drivers[i];
+            driverList.add(new Driver(i + 1, d[0], d[1], 0.5, 0.5, d[2], d[3],
+                    stationGraph.getShortestDistance(d[0], d[1]), 30, d[4], 5));
+        }
+        tGraph = new DriverConfig(driverList, stationGraph).getTimeExpandedGraph();
+        plainSearch = new DijkstraTimeExpandedAlgorithm(tGraph, false);
+        goalDirectedSearch = new DijkstraTimeExpandedAlgorithm(tGraph, true);
+    }
+
+    private IntArrayList getTimeVertices(int stationId) {
+        TimeExpandedAdjacency adjacency = tGraph.getAdjacency();
+        IntArrayList vertices = new IntArrayList();
+        for (int v = 0; v < adjacency.getNumberOfVertices(); v++) {
+            if (!adjacency.isRemoved(v) && tGraph.getStationIdFromVertexId(v) == stationId) vertices.add(v);
+        }
+        return vertices;
+    }
+
+    private int getArrivalTime(Path path) {
+        return path == null ? Integer.MAX_VALUE
+                : tGraph.getTimeFromVertexId(path.getVertexAt(path.getNumberOfVertices() - 1));
+    }
+
+    private Path search(DijkstraTimeExpandedAlgorithm algorithm, int source, int destinationStationId,
+                        int latestArrivalTime) {
+        return algorithm.compute(source, destinationStationId, VOLUME, latestArrivalTime, Grph.DIRECTION.out, null);
+    }
+
+    @Test
+    public void goalDirectedSearchArrivesAsEarlyAsPlainSearch() {
+        int numPaths = 0;
+        for (int s = 1; s <= NUM_STATIONS; s++) {
+            for (int t = 1; t <= NUM_STATIONS; t++) {
+                if (s == t) continue;
+                for (int i = 0; i < getTimeVertices(s).size(); i++) {
+                    int source = getTimeVertices(s).get(i);
+                    Path plainPath = search(plainSearch, source, t, Integer.MAX_VALUE);
+                    Path goalDirectedPath = search(goalDirectedSearch, source, t, Integer.MAX_VALUE);
+
+                    assertEquals(getArrivalTime(plainPath), getArrivalTime(goalDirectedPath));
+                    if (plainPath != null) {
+                        numPaths++;
+                        assertEquals(source, goalDirectedPath.getVertexAt(0));
+                        assertEquals(t, tGraph.getStationIdFromVertexId(
+                                goalDirectedPath.getVertexAt(goalDirectedPath.getNumberOfVertices() - 1)));
+                    }
+                }
+            }
+        }
+        assertTrue("the drivers connect some stations", numPaths > 10);
+    }
+
+    @Test
+    public void noPathArrivesAfterTheLatestArrivalTime() {
+        for (int s = 1; s <= NUM_STATIONS; s++) {
+            for (int t = 1; t <= NUM_STATIONS; t++) {
+                if (s == t) continue;
+                for (int i = 0; i < getTimeVertices(s).size(); i++) {
+                    int source = getTimeVertices(s).get(i);
+                    int arrivalTime = getArrivalTime(search(plainSearch, source, t, Integer.MAX_VALUE));
+                    if (arrivalTime == Integer.MAX_VALUE) continue;
+
+                    for (DijkstraTimeExpandedAlgorithm algorithm : new DijkstraTimeExpandedAlgorithm[]{
+                            plainSearch, goalDirectedSearch}) {
+                        // the earliest arrival is the deadline: it is still found
+                        assertEquals(arrivalTime, getArrivalTime(search(algorithm, source, t, arrivalTime)));
+                        // a deadline before the earliest arrival leaves no path
+                        assertNull(search(algorithm, source, t, arrivalTime - 1));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void multiSourceSearchArrivesAsEarlyAsTheBestSingleSource() {
+        for (int s = 1; s <= NUM_STATIONS; s++) {
+            IntArrayList sources = getTimeVertices(s);
+            if (sources.isEmpty()) continue;
+            int earliestDepartureTime = Integer.MAX_VALUE;
+            for (int i = 0; i < sources.size(); i++) {
+                earliestDepartureTime = Math.min(earliestDepartureTime, tGraph.getTimeFromVertexId(sources.get(i)));
+            }
+            int[] waitingTimes = new int[sources.size()];
+            for (int i = 0; i < sources.size(); i++) {
+                waitingTimes[i] = tGraph.getTimeFromVertexId(sources.get(i)) - earliestDepartureTime;
+            }
+
+            for (int t = 1; t <= NUM_STATIONS; t++) {
+                if (s == t) continue;
+                int bestArrivalTime = Integer.MAX_VALUE;
+                for (int i = 0; i < sources.size(); i++) {
+                    bestArrivalTime = Math.min(bestArrivalTime,
+                            getArrivalTime(search(plainSearch, sources.get(i), t, Integer.MAX_VALUE)));
+                }
+
+                for (DijkstraTimeExpandedAlgorithm algorithm : new DijkstraTimeExpandedAlgorithm[]{
+                        plainSearch, goalDirectedSearch}) {
+                    Path path = algorithm.compute(sources.toArray(), waitingTimes, t, VOLUME, Integer.MAX_VALUE,
+                            null, Grph.DIRECTION.out, null);
+                    assertEquals(bestArrivalTime, getArrivalTime(path));
+                    if (path != null) assertTrue(sources.contains(path.getVertexAt(0)));
+                }
+            }
+        }
+    }
+}
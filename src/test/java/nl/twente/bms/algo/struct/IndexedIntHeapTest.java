@@ -0,0 +1,110 @@
+package nl.twente.bms.algo.struct;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link IndexedIntHeap}.
+ */
+public class IndexedIntHeapTest {
+
+    @Test
+    public void dequeuesInPriorityOrder() {
+        IndexedIntHeap heap = new IndexedIntHeap(2);
+        int[] priorities = {50, 10, 40, 30, 20, 60};
+        for (int element = 0; element < priorities.length; element++) {
+            heap.insert(element, priorities[element]);
+        }
+
+        assertEquals(priorities.length, heap.size());
+        assertEquals(10, heap.peekMinPriority());
+        int[] order = new int[priorities.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = heap.dequeueMin();
+        }
+        assertArrayEquals(new int[]{1, 4, 3, 2, 0, 5}, order);
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void insertOrDecreaseOnlyLowersThePriority() {
+        IndexedIntHeap heap = new IndexedIntHeap();
+        heap.insertOrDecrease(7, 30);
+        heap.insertOrDecrease(3, 20);
+        heap.insertOrDecrease(7, 10);
+        // a greater priority is ignored
+        heap.insertOrDecrease(3, 40);
+
+        assertEquals(2, heap.size());
+        assertEquals(10, heap.peekMinPriority());
+        assertEquals(7, heap.dequeueMin());
+        assertEquals(20, heap.peekMinPriority());
+        assertEquals(3, heap.dequeueMin());
+    }
+
+    @Test
+    public void growsForLargeElementIds() {
+        IndexedIntHeap heap = new IndexedIntHeap(1);
+        heap.insert(1000, 5);
+        heap.insert(5, 1);
+        heap.insert(100000, 3);
+
+        assertTrue(heap.contains(100000));
+        assertFalse(heap.contains(99999));
+        assertEquals(5, heap.dequeueMin());
+        assertEquals(100000, heap.dequeueMin());
+        assertEquals(1000, heap.dequeueMin());
+    }
+
+    @Test
+    public void elementsCanBeInsertedAgainAfterClear() {
+        IndexedIntHeap heap = new IndexedIntHeap();
+        heap.insert(1, 10);
+        heap.insert(2, 20);
+        heap.clear();
+
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(1));
+        assertFalse(heap.contains(2));
+        heap.insert(2, 5);
+        assertEquals(2, heap.dequeueMin());
+        assertFalse(heap.contains(2));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void dequeueFromEmptyHeapFails() {
+        new IndexedIntHeap().dequeueMin();
+    }
+
+    @Test
+    public void matchesSortedOrderOnRandomDecreases() {
+        Random random = new Random(42);
+        int numElements = 500;
+        int[] priorities = new int[numElements];
+        IndexedIntHeap heap = new IndexedIntHeap();
+        for (int element = 0; element < numElements; element++) {
+            priorities[element] = random.nextInt(10000);
+            heap.insert(element, priorities[element]);
+        }
+        for (int i = 0; i < 2000; i++) {
+            int element = random.nextInt(numElements);
+            int priority = random.nextInt(10000);
+            heap.insertOrDecrease(element, priority);
+            priorities[element] = Math.min(priorities[element], priority);
+        }
+
+        int[] sorted = priorities.clone();
+        Arrays.sort(sorted);
+        for (int expected : sorted) {
+            assertEquals(expected, heap.peekMinPriority());
+            int element = heap.dequeueMin();
+            assertEquals(expected, priorities[element]);
+        }
+        assertTrue(heap.isEmpty());
+    }
+}
@@ -0,0 +1,104 @@
+package nl.twente.bms.algo.struct;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link LoadTimeline}.
+ */
+public class LoadTimelineTest {
+
+    @Test
+    public void overlappingLoadsAddUp() {
+        LoadTimeline timeline = new LoadTimeline(0, 99);
+        timeline.addLoad(10, 30, 2);
+        timeline.addLoad(20, 40, 3);
+        timeline.addLoad(25, 26, 1);
+
+        assertEquals(0, timeline.getLoad(9));
+        assertEquals(2, timeline.getLoad(10));
+        assertEquals(5, timeline.getLoad(20));
+        assertEquals(6, timeline.getLoad(25));
+        assertEquals(5, timeline.getLoad(26));
+        // the time to is excluded
+        assertEquals(3, timeline.getLoad(30));
+        assertEquals(0, timeline.getLoad(40));
+        assertEquals(6, timeline.getMaxLoad(0, 100));
+    }
+
+    @Test
+    public void maxLoadOverPartialNodes() {
+        // 13 minutes do not fill the leaves, the intervals cut the nodes at odd places
+        LoadTimeline timeline = new LoadTimeline(100, 112);
+        timeline.addLoad(101, 104, 4);
+        timeline.addLoad(103, 110, 1);
+        timeline.addLoad(111, 112, 7);
+
+        assertEquals(4, timeline.getMaxLoad(101, 103));
+        assertEquals(5, timeline.getMaxLoad(102, 105));
+        assertEquals(1, timeline.getMaxLoad(104, 111));
+        assertEquals(7, timeline.getMaxLoad(105, 112));
+        assertEquals(0, timeline.getMaxLoad(112, 113));
+        assertEquals(0, timeline.getMaxLoad(100, 101));
+    }
+
+    @Test
+    public void emptyIntervalsHaveNoLoad() {
+        LoadTimeline timeline = new LoadTimeline(0, 10);
+        timeline.addLoad(5, 5, 3);
+        timeline.addLoad(6, 4, 3);
+        assertEquals(0, timeline.getMaxLoad(0, 11));
+
+        timeline.addLoad(0, 11, 2);
+        assertEquals(0, timeline.getMaxLoad(5, 5));
+        assertEquals(0, timeline.getMaxLoad(7, 3));
+    }
+
+    @Test
+    public void timesOutsideTheTimelineAreClamped() {
+        LoadTimeline timeline = new LoadTimeline(100, 200);
+        // counted as the start time and the end time
+        timeline.addLoad(50, 101, 2);
+        timeline.addLoad(200, 300, 3);
+
+        assertEquals(2, timeline.getLoad(0));
+        assertEquals(2, timeline.getLoad(100));
+        assertEquals(0, timeline.getLoad(101));
+        assertEquals(3, timeline.getLoad(250));
+        assertEquals(3, timeline.getLoad(200));
+        assertEquals(0, timeline.getMaxLoad(101, 200));
+        // a load entirely before the start still counts at the start time
+        timeline.addLoad(10, 20, 4);
+        assertEquals(6, timeline.getLoad(100));
+        assertEquals(6, timeline.getMaxLoad(0, 10));
+    }
+
+    @Test
+    public void matchesMinuteArrayOnRandomLoads() {
+        Random random = new Random(42);
+        int startTime = 30;
+        int numMinutes = 77;
+        int[] loads = new int[numMinutes];
+        LoadTimeline timeline = new LoadTimeline(startTime, startTime + numMinutes - 1);
+        for (int i = 0; i < 500; i++) {
+            int from = startTime + random.nextInt(numMinutes);
+            int to = from + 1 + random.nextInt(startTime + numMinutes - from);
+            int load = 1 + random.nextInt(5);
+            timeline.addLoad(from, to, load);
+            for (int time = from; time < to; time++) {
+                loads[time - startTime] += load;
+            }
+
+            int queryFrom = startTime + random.nextInt(numMinutes);
+            int queryTo = queryFrom + 1 + random.nextInt(startTime + numMinutes - queryFrom);
+            int expected = 0;
+            for (int time = queryFrom; time < queryTo; time++) {
+                expected = Math.max(expected, loads[time - startTime]);
+            }
+            assertEquals(expected, timeline.getMaxLoad(queryFrom, queryTo));
+        }
+    }
+}
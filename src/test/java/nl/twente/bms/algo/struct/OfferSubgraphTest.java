@@ -0,0 +1,107 @@
+package nl.twente.bms.algo.struct;
+
+import nl.twente.bms.model.MatchingModel;
+import nl.twente.bms.model.conf.DriverConfig;
+import nl.twente.bms.model.elem.Driver;
+import nl.twente.bms.model.elem.Offer;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link OfferSubgraph}.
+ */
+public class OfferSubgraphTest {
+
+    @Test
+    public void verticesAndArcsAreAddedOnce() {
+        OfferSubgraph subgraph = new OfferSubgraph(10);
+        int u = subgraph.addVertex(10, 1);
+        int v = subgraph.addVertex(25, 2);
+        assertEquals(u, subgraph.addVertex(10, 1));
+        subgraph.addArcIfAbsent(u, v, 15);
+        subgraph.addArcIfAbsent(u, v, 15);
+        subgraph.trimToSize();
+
+        assertEquals(2, subgraph.getNumberOfVertices());
+        int[] operations = Arrays.copyOf(subgraph.getOperations(), subgraph.getOperationsLength());
+        assertArrayEquals(new int[]{
+                OfferSubgraph.ADD_VERTEX, 10, 1,
+                OfferSubgraph.ADD_VERTEX, 25, 2,
+                OfferSubgraph.ADD_ARC, u, v, 15}, operations);
+    }
+
+    @Test
+    public void subgraphsBuiltInParallelAreTheSequentialOnes() throws Exception {
+        MatchingModel model = new MatchingModel("Data26_1000_1000_d.xls", 150, 150);
+        DriverConfig driverConfig = model.getDriverConfig();
+        TimeExpandedGraph graph = driverConfig.getTimeExpandedGraph();
+        int numOffers = driverConfig.getDriverList().size();
+        Offer[] offers = new Offer[numOffers];
+        for (int i = 0; i < numOffers; i++) {
+            offers[i] = driverConfig.getOfferById(i);
+        }
+
+        OfferSubgraph[] sequential = new OfferSubgraph[numOffers];
+        for (int i = 0; i < numOffers; i++) {
+            sequential[i] = graph.buildOfferSubgraph(offers[i]);
+        }
+        OfferSubgraph[] parallel = new OfferSubgraph[numOffers];
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            pool.submit(() -> IntStream.range(0, numOffers).parallel()
+                    .forEach(i -> parallel[i] = graph.buildOfferSubgraph(offers[i]))).get();
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int i = 0; i < numOffers; i++) {
+            assertSameSubgraph(sequential[i], parallel[i]);
+        }
+    }
+
+    @Test
+    public void continuationsBuiltFromTheCandidateStationsAreTheFullScanOnes() {
+        MatchingModel model = new MatchingModel("Data26_1000_1000_d.xls", 150, 150);
+        DriverConfig driverConfig = model.getDriverConfig();
+        TimeExpandedGraph graph = driverConfig.getTimeExpandedGraph();
+        StationGraph stationGraph = model.getStationConfig().getStationGraph();
+        int numContinuations = 0;
+        for (int i = 0; i < driverConfig.getDriverList().size(); i++) {
+            Driver driver = driverConfig.getDriverList().get(i);
+            OfferSubgraph subgraph = graph.buildOfferSubgraph(driver.createInitOffer(i, stationGraph));
+            for (int stop : subgraph.getCandidateStations()) {
+                // continue the offer from each station it can stop at, once from the candidate stations
+                // of its subgraph and once scanning all the stations
+                Offer offer = driver.createInitOffer(i, stationGraph);
+                int distanceToStop = stationGraph.getShortestDistance(offer.getSource(), stop);
+                if (stop == offer.getSource() || !stationGraph.isFeasible(offer, stop)) continue;
+                int time = offer.getDepartureTime() + offer.getDuration(distanceToStop);
+                Offer fullScan = driver.createInitOffer(i, stationGraph);
+                fullScan.continueFrom(-1, stop, time, distanceToStop);
+                if (!fullScan.isFeasible()) continue;
+                offer.setCandidateStations(subgraph.getCandidateStations(), subgraph.getCandidateDetour());
+                offer.continueFrom(-1, stop, time, distanceToStop);
+                if (offer.getMaxDetour() > offer.getCandidateDetour()) continue;
+
+                OfferSubgraph continuation = graph.buildOfferSubgraph(offer);
+                assertSameSubgraph(graph.buildOfferSubgraph(fullScan), continuation);
+                assertTrue(continuation.getCandidateStations().length <= subgraph.getCandidateStations().length);
+                numContinuations++;
+            }
+        }
+        assertTrue("some offers continue from their candidate stations", numContinuations > 100);
+    }
+
+    private static void assertSameSubgraph(OfferSubgraph expected, OfferSubgraph actual) {
+        assertEquals(expected.getDepartureTime(), actual.getDepartureTime());
+        assertEquals(expected.getTargetTime(), actual.getTargetTime());
+        assertEquals(expected.getNumberOfVertices(), actual.getNumberOfVertices());
+        assertArrayEquals(Arrays.copyOf(expected.getOperations(), expected.getOperationsLength()),
+                Arrays.copyOf(actual.getOperations(), actual.getOperationsLength()));
+    }
+}
@@ -0,0 +1,65 @@
+package nl.twente.bms.algo.struct;
+
+import org.junit.Test;
+
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link StationGraph}.
+ */
+public class StationGraphTest {
+
+    /**
+     * 1 - 2 - 4 and 1 - 3 - 4, the path over 3 is 50% longer
+     */
+    private static StationGraph createStationGraph() {
+        StationGraph g = new StationGraph();
+        for (int v = 1; v <= 4; v++) {
+            g.addVertex(v);
+        }
+        g.setEdgeWeight(g.addUndirectedSimpleEdge(1, 2), 10);
+        g.setEdgeWeight(g.addUndirectedSimpleEdge(2, 4), 10);
+        g.setEdgeWeight(g.addUndirectedSimpleEdge(1, 3), 15);
+        g.setEdgeWeight(g.addUndirectedSimpleEdge(3, 4), 15);
+        return g;
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setDirectDistanceRequiresInitializedDistances() {
+        createStationGraph().setDirectDistance(1, 2, 10);
+    }
+
+    @Test
+    public void directDistancesAreSymmetric() {
+        StationGraph g = createStationGraph();
+        g.initDirectDistances();
+        g.setDirectDistance(1, 4, 18);
+
+        assertEquals(18, g.getDirectDistance(4, 1));
+        assertEquals(StationGraph.NO_DISTANCE, g.getDirectDistance(2, 3));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void maxDetourPathsRequireShortestDistances() {
+        StationGraph g = createStationGraph();
+        g.buildCompactGraph();
+        g.getMaxDetourPaths(1, 4, 0.5);
+    }
+
+    @Test
+    public void maxDetourPathsAreWithinTheDetour() {
+        StationGraph g = createStationGraph();
+        g.buildCompactGraph();
+        g.computeAllSourceShortestDistances(true);
+
+        assertEquals(20, g.getShortestDistance(1, 4));
+        assertEquals(1, g.getMaxDetourPaths(1, 4, 0.4).size());
+        Collection<WeightedSmartPath> paths = g.getMaxDetourPaths(1, 4, 0.5);
+        assertEquals(2, paths.size());
+        for (WeightedSmartPath path : paths) {
+            assertTrue(path.getWeight() <= 30);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package nl.twente.bms.algo.struct;
+
+import grph.path.Path;
+import nl.twente.bms.model.MatchingModel;
+import nl.twente.bms.model.conf.DriverConfig;
+import nl.twente.bms.model.elem.Offer;
+import nl.twente.bms.model.elem.Parcel;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link TimeExpandedGraph}.
+ */
+public class TimeExpandedGraphTest {
+
+    @Test
+    public void bulkAddedOffersAreTheIncrementallyAddedOnes() {
+        assertBulkAddedOffersAreTheIncrementallyAddedOnes(new MatchingModel("Data26_30_30.xls"));
+        assertBulkAddedOffersAreTheIncrementallyAddedOnes(new MatchingModel("Data26_1000_1000_d.xls", 150, 150));
+    }
+
+    /**
+     * The graph of the model is built by {@link TimeExpandedGraph#addOffers}, build it again offer by offer
+     * and compare the vertices and the out arcs of every vertex in order
+     */
+    private static void assertBulkAddedOffersAreTheIncrementallyAddedOnes(MatchingModel model) {
+        DriverConfig driverConfig = model.getDriverConfig();
+        TimeExpandedGraph bulk = driverConfig.getTimeExpandedGraph();
+        int numOffers = driverConfig.getDriverList().size();
+        int[] sourceVertices = new int[numOffers];
+        int[] earliestArrivalTimes = new int[numOffers];
+        for (int i = 0; i < numOffers; i++) {
+            sourceVertices[i] = driverConfig.getOfferById(i).getSourceTimeVertex();
+            earliestArrivalTimes[i] = driverConfig.getOfferById(i).getEarliestArrivalTime();
+        }
+
+        TimeExpandedGraph incremental = new TimeExpandedGraph(model.getStationConfig().getStationGraph(), driverConfig);
+        for (int i = 0; i < numOffers; i++) {
+            Offer offer = driverConfig.getOfferById(i);
+            incremental.addOffer(offer, bulk.buildOfferSubgraph(offer));
+            assertEquals(sourceVertices[i], offer.getSourceTimeVertex());
+            assertEquals(earliestArrivalTimes[i], offer.getEarliestArrivalTime());
+        }
+
+        TimeExpandedAdjacency expected = incremental.getAdjacency();
+        TimeExpandedAdjacency actual = bulk.getAdjacency();
+        assertEquals(expected.getNumberOfVertices(), actual.getNumberOfVertices());
+        for (int v = 0; v < expected.getNumberOfVertices(); v++) {
+            assertEquals(incremental.getTimeFromVertexId(v), bulk.getTimeFromVertexId(v));
+            assertEquals(incremental.getStationIdFromVertexId(v), bulk.getStationIdFromVertexId(v));
+            assertEquals(incremental.getOfferIdFromVertexId(v), bulk.getOfferIdFromVertexId(v));
+            assertEquals("out degree of " + v, expected.getOutDegree(v), actual.getOutDegree(v));
+            for (int i = 0; i < expected.getOutDegree(v); i++) {
+                assertEquals(expected.getOutNeighbor(v, i), actual.getOutNeighbor(v, i));
+                assertEquals(expected.getOutWeight(v, i), actual.getOutWeight(v, i));
+            }
+        }
+    }
+
+    @Test
+    public void assignedParcelsNeverOverloadADriver() {
+        assertAssignedParcelsNeverOverloadADriver(new MatchingModel("Data26_1000_1000_d.xls", 150, 150));
+        assertAssignedParcelsNeverOverloadADriver(new MatchingModel("Data76_1000_1000_d.xls", 100, 100));
+    }
+
+    /**
+     * Solve the model and replay the paths of the assigned parcels: every parcel loads the driver of a hop
+     * from the time it boards to the time it gets off, excluded, the load may never exceed the capacity
+     */
+    private static void assertAssignedParcelsNeverOverloadADriver(MatchingModel model) {
+        model.solve();
+        DriverConfig driverConfig = model.getDriverConfig();
+        TimeExpandedGraph tGraph = driverConfig.getTimeExpandedGraph();
+        int[][] loads = new int[driverConfig.getDriverList().size()][];
+        int numHops = 0;
+        for (Parcel parcel : model.getParcelConfig().getParcelSortedList()) {
+            Path path = parcel.getPath();
+            if (path == null) continue;
+            int numVertices = path.getNumberOfVertices();
+            for (int i = 0, j; i < numVertices; i = j + 1) {
+                int offerId = tGraph.getOfferIdFromVertexId(path.getVertexAt(i));
+                for (j = i; j + 1 < numVertices && tGraph.getOfferIdFromVertexId(path.getVertexAt(j + 1)) == offerId; j++) ;
+                int from = tGraph.getTimeFromVertexId(path.getVertexAt(i));
+                int to = tGraph.getTimeFromVertexId(path.getVertexAt(j));
+                if (loads[offerId] == null || loads[offerId].length < to) {
+                    loads[offerId] = loads[offerId] == null ? new int[to] : Arrays.copyOf(loads[offerId], to);
+                }
+                for (int time = from; time < to; time++) {
+                    loads[offerId][time] += parcel.getVolume();
+                }
+                if (from < to) numHops++;
+            }
+        }
+        assertTrue("some parcels are carried", numHops > 0);
+
+        for (int offerId = 0; offerId < loads.length; offerId++) {
+            if (loads[offerId] == null) continue;
+            int capacity = driverConfig.getOfferById(offerId).getCapacity();
+            for (int time = 0; time < loads[offerId].length; time++) {
+                assertTrue("load of offer " + offerId + " at " + time, loads[offerId][time] <= capacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package nl.twente.bms.algo.struct;
+
+import nl.twente.bms.model.elem.Driver;
+import nl.twente.bms.model.elem.Offer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link TimeTable} and its {@link TimeTable.DepartureCursor}.
+ */
+public class TimeTableTest {
+    private static final int HOLD = 30;
+
+    private TimeExpandedAdjacency adjacency;
+    private TimeTable timeTable;
+    private Offer offer;
+
+    @Before
+    public void setUp() {
+        StationGraph stationGraph = new StationGraph();
+        stationGraph.addVertex(1);
+        stationGraph.addVertex(2);
+        stationGraph.setEdgeWeight(stationGraph.addUndirectedSimpleEdge(1, 2), 10);
+        stationGraph.buildCompactGraph();
+        stationGraph.computeAllSourceShortestDistances(true);
+
+        Driver driver = new Driver(0, 1, 2, 0.5, 0.5, 0, 1440, 10, HOLD, 1.0, 10);
+        offer = new Offer(0, 1, 2, 0, 10, driver, stationGraph);
+        adjacency = new TimeExpandedAdjacency();
+        timeTable = new TimeTable();
+    }
+
+    private int addTimeVertex(int time) {
+        int v = adjacency.addVertex();
+        timeTable.addTimeVertex(adjacency, v, time, offer);
+        return v;
+    }
+
+    private static void assertDepartures(TimeTable.DepartureCursor cursor, int... expected) {
+        for (int v : expected) {
+            assertEquals(v, cursor.next());
+        }
+        assertEquals(-1, cursor.next());
+        assertEquals(-1, cursor.next());
+    }
+
+    @Test
+    public void departuresAreInTimeOrderFromTheDepartureTime() {
+        int v100 = addTimeVertex(100);
+        int v50 = addTimeVertex(50);
+        int v100b = addTimeVertex(100);
+        int v2000 = addTimeVertex(2000);
+
+        assertDepartures(timeTable.getDepartures(-5), v50, v100, v100b, v2000);
+        assertDepartures(timeTable.getDepartures(51), v100, v100b, v2000);
+        assertDepartures(timeTable.getDepartures(2001));
+    }
+
+    @Test
+    public void removedVerticesAreSkipped() {
+        int v10 = addTimeVertex(10);
+        int v20 = addTimeVertex(20);
+        int v20b = addTimeVertex(20);
+        int v30 = addTimeVertex(30);
+        timeTable.removeTimeVertex(v20, 20, offer.getId());
+
+        assertDepartures(timeTable.getDepartures(0), v10, v20b, v30);
+        assertEquals(v20b, timeTable.findFirstTimeVertex(11));
+        assertEquals(v20b, timeTable.findLastTimeVertex(29));
+    }
+
+    @Test
+    public void verticesRemovedWhileWalkingAreSkipped() {
+        int v10 = addTimeVertex(10);
+        int v20 = addTimeVertex(20);
+        int v20b = addTimeVertex(20);
+        int v30 = addTimeVertex(30);
+
+        TimeTable.DepartureCursor cursor = timeTable.getDepartures(0);
+        assertEquals(v10, cursor.next());
+        assertEquals(v20, cursor.next());
+        // the visited vertex and the next ones in the same slot and in a later slot
+        timeTable.removeTimeVertex(v20, 20, offer.getId());
+        timeTable.removeTimeVertex(v20b, 20, offer.getId());
+        timeTable.removeTimeVertex(v30, 30, offer.getId());
+        assertDepartures(cursor);
+    }
+
+    @Test
+    public void aSlotOfTombstonesIsReused() {
+        int v10 = addTimeVertex(10);
+        int v20 = addTimeVertex(20);
+        timeTable.removeTimeVertex(v20, 20, offer.getId());
+        assertEquals(-1, timeTable.findFirstTimeVertex(11));
+
+        int v20b = addTimeVertex(20);
+        assertEquals(v20b, timeTable.getTimeVertex(20, offer.getId()));
+        assertDepartures(timeTable.getDepartures(0), v10, v20b);
+    }
+
+    @Test
+    public void removingTheLastVertexEmptiesTheTimeTable() {
+        int v10 = addTimeVertex(10);
+        assertFalse(timeTable.isEmpty());
+        timeTable.removeTimeVertex(v10, 10, offer.getId());
+
+        assertTrue(timeTable.isEmpty());
+        assertEquals(-1, timeTable.getTimeVertex(10, offer.getId()));
+        assertDepartures(timeTable.getDepartures(0));
+    }
+
+    @Test
+    public void waitingArcsLinkTheNearestVerticesWithinTheHold() {
+        int v10 = addTimeVertex(10);
+        int v40 = addTimeVertex(40);
+        // 10 -> 40 is replaced by 10 -> 25 -> 40
+        int v25 = addTimeVertex(25);
+        // beyond the hold duration
+        int v100 = addTimeVertex(100);
+
+        assertFalse(adjacency.hasArc(v10, v40));
+        assertTrue(adjacency.hasArc(v10, v25));
+        assertTrue(adjacency.hasArc(v25, v40));
+        assertEquals(0, adjacency.getOutDegree(v40));
+        assertEquals(0, adjacency.getOutDegree(v100));
+    }
+}
@@ -0,0 +1,38 @@
+package nl.twente.bms.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link RestartEngine}.
+ */
+public class RestartEngineTest {
+    private static final String CONF_FILE_PATH = "Data26_30_30.xls";
+
+    @Test
+    public void costsDoNotDependOnTheNumberOfThreads() {
+        MatchingModel model = new MatchingModel(CONF_FILE_PATH);
+        model.solve();
+
+        RestartEngine.Result sequential = new RestartEngine(model, 42, 1).run(2, 7);
+        RestartEngine.Result parallel = new RestartEngine(model, 42, 3).run(2, 7);
+
+        assertEquals(2, sequential.getFirstIter());
+        assertEquals(6, sequential.getNumIter());
+        for (int iter = 2; iter <= 7; iter++) {
+            assertEquals(sequential.getCost(iter), parallel.getCost(iter), 0.0);
+        }
+    }
+
+    @Test
+    public void restartsLeaveTheModelAsIs() {
+        MatchingModel model = new MatchingModel(CONF_FILE_PATH);
+        model.solve();
+        double cost = model.computeCost();
+
+        new RestartEngine(model, 7, 2).run(2, 4);
+
+        assertEquals(cost, model.computeCost(), 0.0);
+    }
+}
@@ -0,0 +1,126 @@
+package nl.twente.bms.model.conf;
+
+import nl.twente.bms.algo.struct.StationGraph;
+import nl.twente.bms.model.elem.Driver;
+import nl.twente.bms.model.elem.Offer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link OfferTable}.
+ */
+public class OfferTableTest {
+    private StationGraph stationGraph;
+    private Driver driver;
+
+    @Before
+    public void setUp() {
+        stationGraph = new StationGraph();
+        stationGraph.addVertex(1);
+        stationGraph.addVertex(2);
+        stationGraph.setEdgeWeight(stationGraph.addUndirectedSimpleEdge(1, 2), 10);
+        stationGraph.buildCompactGraph();
+        stationGraph.computeAllSourceShortestDistances(true);
+
+        driver = new Driver(7, 1, 2, 0.5, 0.5, 0, 1440, 10, 30, 1.0, 10);
+    }
+
+    private Offer createOffer(int id, int capacity) {
+        return new Offer(id, 1, 2, 0, capacity, driver, stationGraph);
+    }
+
+    @Test
+    public void columnsHoldTheOfferFields() {
+        OfferTable offerTable = new OfferTable(2);
+        Offer offer = createOffer(0, 5);
+        offerTable.add(offer);
+
+        assertEquals(1, offerTable.size());
+        assertSame(offer, offerTable.get(0));
+        assertEquals(5, offerTable.getCapacity(0));
+        assertEquals(7, offerTable.getDriverId(0));
+        assertEquals(0, offerTable.getGeneration(0));
+        assertEquals(1, offerTable.nextGeneration(0));
+        assertEquals(1, offerTable.getGeneration(0));
+        assertSame(offer, offerTable.get(0));
+    }
+
+    @Test
+    public void freeCapacityFollowsTheLoadOfTheDriver() {
+        OfferTable offerTable = new OfferTable(1);
+        offerTable.add(createOffer(0, 5));
+        assertEquals(5, offerTable.getFreeCapacity(0, 0, 100));
+
+        offerTable.addLoad(0, 10, 20, 2);
+        offerTable.addLoad(0, 15, 30, 3);
+        assertEquals(0, offerTable.getFreeCapacity(0, 0, 100));
+        assertEquals(3, offerTable.getFreeCapacity(0, 10, 15));
+        assertEquals(2, offerTable.getFreeCapacity(0, 20, 30));
+        assertEquals(5, offerTable.getFreeCapacity(0, 30, 40));
+        // the capacity column keeps the capacity of the driver
+        assertEquals(5, offerTable.getCapacity(0));
+    }
+
+    @Test
+    public void growsBeyondItsInitialCapacityAndLeavesGapsEmpty() {
+        OfferTable offerTable = new OfferTable(1);
+        offerTable.add(createOffer(0, 5));
+        Offer offer = createOffer(10, 3);
+        offerTable.add(offer);
+
+        assertEquals(11, offerTable.size());
+        assertSame(offer, offerTable.get(10));
+        assertEquals(3, offerTable.getCapacity(10));
+        assertNull(offerTable.get(4));
+        assertEquals(0, offerTable.getCapacity(4));
+    }
+
+    @Test
+    public void clearEmptiesTheColumns() {
+        OfferTable offerTable = new OfferTable(4);
+        offerTable.add(createOffer(0, 5));
+        offerTable.add(createOffer(1, 5));
+        offerTable.nextGeneration(1);
+        offerTable.addLoad(1, 0, 10, 5);
+        offerTable.clear();
+        assertEquals(0, offerTable.size());
+
+        offerTable.add(createOffer(2, 4));
+        assertNull(offerTable.get(1));
+        assertEquals(0, offerTable.getCapacity(1));
+        assertEquals(0, offerTable.getDriverId(1));
+        assertEquals(0, offerTable.getGeneration(1));
+
+        offerTable.add(createOffer(1, 5));
+        assertEquals(0, offerTable.getGeneration(1));
+        assertEquals(5, offerTable.getFreeCapacity(1, 0, 10));
+    }
+
+    @Test
+    public void accessorsRejectTheIdsNotInTheTable() {
+        OfferTable offerTable = new OfferTable(8);
+        offerTable.add(createOffer(0, 5));
+
+        // the ids within the column length but beyond the size fail as well
+        assertOutOfBounds(() -> offerTable.get(1));
+        assertOutOfBounds(() -> offerTable.getCapacity(1));
+        assertOutOfBounds(() -> offerTable.getDriverId(1));
+        assertOutOfBounds(() -> offerTable.getGeneration(1));
+        assertOutOfBounds(() -> offerTable.nextGeneration(1));
+        assertOutOfBounds(() -> offerTable.addLoad(1, 0, 10, 1));
+        assertOutOfBounds(() -> offerTable.getFreeCapacity(1, 0, 10));
+        assertOutOfBounds(() -> offerTable.get(-1));
+        assertOutOfBounds(() -> offerTable.getGeneration(100));
+    }
+
+    private static void assertOutOfBounds(Runnable access) {
+        try {
+            access.run();
+            fail("IndexOutOfBoundsException expected");
+        } catch (IndexOutOfBoundsException expected) {
+            // the id is not in the table
+        }
+    }
+}